@@ -1,6 +1,7 @@
 package com.lapissea.blendfileparser;
 
 import com.lapissea.blendfileparser.exceptions.BlendFileMissingBlock;
+import com.lapissea.util.ArrayViewList;
 import com.lapissea.util.LogUtil;
 import com.lapissea.util.NotNull;
 import com.lapissea.util.UtilL;
@@ -12,6 +13,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -19,45 +21,60 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.util.*;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 
-import static com.lapissea.blendfileparser.BlockCode.*;
-import static com.lapissea.blendfileparser.FileBlockHeader.*;
+import static com.lapissea.blendfileparser.BlendFileHeader.Compression.*;
 import static com.lapissea.util.UtilL.*;
 
 public class BlendFile implements AutoCloseable, Comparable<BlendFile>{
 	
 	@NotNull
 	public static BlendFile read(File file) throws IOException{
+		return read(file, new ReadOptions());
+	}
+	
+	@NotNull
+	public static BlendFile read(File file, @NotNull ReadOptions options) throws IOException{
 		Assert(file.isFile());
 		File dir=Objects.requireNonNull(file.getParentFile());
 		
-		return read(FileInputStream::new, file.getPath());
+		return new BlendFile(FileInputStream::new, file.getPath(), file, options);
 	}
 	
 	@NotNull
 	public static BlendFile read(UnsafeFunction<String, InputStream, IOException> dataProvider, String blendName) throws IOException{
-		return new BlendFile(dataProvider, blendName);
+		return new BlendFile(dataProvider, blendName, null, new ReadOptions());
 	}
 	
 	final         UnsafeFunction<String, InputStream, IOException> source;
 	private final String                                           name;
 	public final  ID<?>                                            id;
 	
-	final         BlendFileHeader            header;
-	public final  Dna1                       dna;
-	private final Map<Long, FileBlockHeader> blockPtrIndex;
-	final         FileBlockHeader[]          blocks;
-	private final Struct                     strayPointerType;
-	
-	private final Map<String, TriFunction<Struct, FileBlockHeader, BlendFile, TypeOptimizations.InstanceComposite>> typeOptimizations;
-	
-	private final Map<Struct.Instance, Translator>                             translationCache=new HashMap<>();
+	final         BlendFileHeader                 header;
+	private       BlendSource                     randomSource;
+	private final ReaderPool                      readers;
+	private final BlockCache                      blockCache;
+	private final CachePolicy.Segment<Object>     blockCacheSegment;
+	private final RawBlockCache                   rawBlockCache;
+	private final WeightedLru.Segment<ByteBuffer> rawBlockCacheSegment;
+	final         boolean                         flatDecoders;
+	public final  Dna1                            dna;
+	private final DnaCatalog.Schema               schema;
+	final         BlockTable                      blocks;
+	private final Struct                          strayPointerType;
+	
+	private final Map<String, TriFunction<Struct, FileBlockHeader, BlendFile, TypeOptimizations.InstanceComposite<?>>> typeOptimizations;
+	
+	private final ConcurrentHashMap<Struct.Instance, Translation>              translationCache=new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Thread, Pending<?>>                        waits           =new ConcurrentHashMap<>();
 	final         Map<String, Function<Struct.Instance, ? extends Translator>> translators     =new HashMap<>();
 	
 	public interface Translator{
@@ -68,62 +85,119 @@ public class BlendFile implements AutoCloseable, Comparable<BlendFile>{
 		registerTranslator(Library::new);
 	}
 	
-	private BlendFile(UnsafeFunction<String, InputStream, IOException> dataProvider, String blendName) throws IOException{
+	private BlendFile(UnsafeFunction<String, InputStream, IOException> dataProvider, String blendName, File file, ReadOptions options) throws IOException{
 		source=dataProvider;
 		this.name=blendName;
 		id=new ID<>(this);
+		readers=new ReaderPool(options.readerPoolSize(), this::reopen);
+		blockCache=options.blockCache();
+		blockCacheSegment=blockCache!=null?blockCache.newSegment():null;
+		rawBlockCache=options.rawBlockCache();
+		rawBlockCacheSegment=rawBlockCache!=null?rawBlockCache.newSegment():null;
 		
-		try(InputStream blendFile=openSource()){
-			boolean supportsMark=blendFile.markSupported();
+		try{
+			try(InputStream blendFile=openSource()){
+				boolean supportsMark=blendFile.markSupported();
+				
+				if(supportsMark) blendFile.mark(BlendFileHeader.BYTE_SIZE);
+				BlendFileHeader header;
+				try{
+					header=new BlendFileHeader(blendFile, NONE);
+				}catch(IOException e){
+					if(supportsMark){
+						blendFile.reset();
+						header=readCompressedHeader(blendFile, file);
+					}else{
+						blendFile.close();
+						try(InputStream s=openSource()){
+							header=readCompressedHeader(s, file);
+						}
+					}
+				}
+				this.header=header;
+			}
 			
-			if(supportsMark) blendFile.mark(BlendFileHeader.BYTE_SIZE);
-			BlendFileHeader header;
-			try{
-				header=new BlendFileHeader(blendFile, false);
-			}catch(IOException e){
-				if(supportsMark){
-					blendFile.reset();
-					header=new BlendFileHeader(new GZIPInputStream(blendFile), true);
-				}else{
-					blendFile.close();
-					try(InputStream s=openSource()){
-						header=new BlendFileHeader(new GZIPInputStream(s), true);
+			if(randomSource==null){
+				if(header.compressed){
+					if(file!=null&&options.compressedMode()==CompressedMode.INDEXED){
+						File indexFile=options.gzipIndexFile();
+						if(indexFile==null) indexFile=GzipIndexSource.defaultIndexFile(file, options.blockIndexDir());
+						randomSource=GzipIndexSource.open(file, indexFile, options.gzipIndexSpan());
+					}
+					if(randomSource==null){
+						InputStream in=openSource();
+						try{
+							in=new GZIPInputStream(in);
+							randomSource=new InflatingSource(in, options.compressedMode());
+						}catch(Throwable e){
+							try{
+								in.close();
+							}catch(Throwable e1){
+								e.addSuppressed(e1);
+							}
+							throw e;
+						}
 					}
+				}else if(file!=null&&options.sourceMode().isRandomAccess()){
+					randomSource=options.sourceMode().open(file);
 				}
 			}
-			this.header=header;
-		}
-		
-		
-		strayPointerType=new Struct(-1, (short)header.ptrSize, new DnaType("StrayPointer", 0, false, null), Collections.singletonList(new Field("void", "badPtr")));
-		
-		LinkedList<FileBlockHeader> blockBuilder=new LinkedList<>();
-		{
-			Dna1[]         dna      ={null};
-			Consumer<Dna1> dnaSetter=d->dna[0]=d;
 			
-			try(BlendInputStream in=reopen()){
-				in.skipNBytes(BlendFileHeader.BYTE_SIZE);
-				while(true){
-					FileBlockHeader block=new FileBlockHeader(in, dnaSetter);
-					if(block.code==END) break;
-					blockBuilder.add(block);
+			if(randomSource!=null&&options.preload()) randomSource.preload();
+			
+			flatDecoders=options.flatDecoders();
+			
+			strayPointerType=new Struct(-1, (short)header.ptrSize, new DnaType("StrayPointer", 0, false, null), Collections.singletonList(new Field("void", "badPtr")));
+			
+			{
+				File                  indexDir=file!=null?options.blockIndexDir():null;
+				BlockIndexCache.Entry cached  =indexDir!=null?BlockIndexCache.load(indexDir, file, header):null;
+				
+				byte[] dnaBody;
+				if(cached!=null){
+					blocks=cached.table;
+					dnaBody=cached.dna;
+				}else{
+					byte[][] dna={null};
+					try(BlendInputStream in=reopen()){
+						in.skipNBytes(BlendFileHeader.BYTE_SIZE);
+						blocks=BlockTable.scan(in, d->dna[0]=d);
+					}
+					dnaBody=Objects.requireNonNull(dna[0]);
+					
+					if(indexDir!=null) BlockIndexCache.store(indexDir, file, header, blocks, dnaBody);
 				}
+				
+				schema=DnaCatalog.get(dnaBody, header);
+				dna=schema.dna;
+				typeOptimizations=schema.typeOptimizations;
 			}
 			
-			this.dna=Objects.requireNonNull(dna[0]);
+			blocks.finish(dna);
+		}catch(Throwable e){
+			try{
+				close();
+			}catch(Throwable e1){
+				e.addSuppressed(e1);
+			}
+			throw e;
 		}
+	}
+	
+	private BlendFileHeader readCompressedHeader(InputStream in, File file) throws IOException{
+		PushbackInputStream pin  =new PushbackInputStream(in, 4);
+		byte[]              magic=new byte[4];
+		int                 read =pin.read(magic);
+		if(read>0) pin.unread(magic, 0, read);
 		
-		typeOptimizations=TypeOptimizations.get(this.dna);
-		
-		blocks=blockBuilder.toArray(NO_BLOCKS);
-		
-		blockPtrIndex=new HashMap<>(blocks.length);
-		for(FileBlockHeader b : blocks){
-			b.init(dna);
-			//noinspection AutoBoxing
-			blockPtrIndex.put(b.oldPtr, b);
+		if(ZstdSource.isMagic(magic)){
+			randomSource=file!=null?new ZstdSource(file):new ZstdSource(pin);
+			try(InputStream s=randomSource.openAt(0)){
+				return new BlendFileHeader(s, ZSTD);
+			}
 		}
+		
+		return new BlendFileHeader(new GZIPInputStream(pin), GZIP);
 	}
 	
 	private static <T extends Translator> Function<Struct.Instance, T> classToNew(Class<T> tClass){
@@ -246,32 +320,109 @@ public class BlendFile implements AutoCloseable, Comparable<BlendFile>{
 		translators.put(structName, translator);
 	}
 	
-	private final Map<Struct.Instance, Struct.Instance> translationLocks=new HashMap<>();
+	/**
+	 * Work one thread does that others wait for. The value is visible before the work is done so a thread that would
+	 * wait on itself, directly or through other waiting threads, gets it unfinished instead of deadlocking.
+	 */
+	private abstract static class Pending<T>{
+		final    Thread               owner=Thread.currentThread();
+		final    CompletableFuture<T> done =new CompletableFuture<>();
+		volatile T                    value;
+	}
+	
+	/**
+	 * Translation of one instance. The translator is visible as soon as it is created so a recursive translation that
+	 * comes back to the instance gets it while it is still being filled in.
+	 */
+	private static final class Translation extends Pending<Translator>{ }
 	
 	@SuppressWarnings({"unchecked"})
 	public <T extends Translator> T translate(Struct.Instance instance){
 		if(instance==null) return null;
 		
 		Assert(instance.blend==this);
-		synchronized(translationLocks){
-			instance=translationLocks.computeIfAbsent(instance, k->k);
+		
+		Translation translation=translationCache.get(instance);
+		if(translation==null){
+			Translation own=new Translation();
+			translation=translationCache.putIfAbsent(instance, own);
+			if(translation==null) return runTranslation(instance, own);
 		}
-		synchronized(instance){//need to synchronize over each instance separately to enable reading unrelated objects at the same time to preserve a high level of parallelism
-			T t=(T)translationCache.get(instance);
-			if(t==null){
-				Function<Struct.Instance, T> translator=(Function<Struct.Instance, T>)translators.get(instance.struct().type.name);
-				if(translator==null) throw new RuntimeException("No translator for "+instance.struct().type.name);
-				
-				t=translator.apply(instance);
-				translationCache.put(instance, t);
-				t.translate(instance);
-			}
+		return (T)awaitTranslation(instance, translation);
+	}
+	
+	@SuppressWarnings({"unchecked"})
+	private <T extends Translator> T runTranslation(Struct.Instance instance, Translation own){
+		try{
+			Function<Struct.Instance, T> translator=(Function<Struct.Instance, T>)translators.get(instance.struct().type.name);
+			if(translator==null) throw new RuntimeException("No translator for "+instance.struct().type.name);
+			
+			T t=translator.apply(instance);
+			own.value=t;
+			t.translate(instance);
+			own.done.complete(t);
 			return t;
+		}catch(Throwable e){
+			translationCache.remove(instance, own);
+			own.done.completeExceptionally(e);
+			throw e;
 		}
 	}
 	
+	private Translator awaitTranslation(Struct.Instance instance, Translation translation){
+		Translator t=await(translation);
+		if(t==null) throw new IllegalStateException("Translation cycle on "+instance.struct().type.name+" before its translator was created");
+		return t;
+	}
+	
+	/**
+	 * Waits for the result of work another thread is doing. If that work depends on this thread, waiting would never
+	 * end so the unfinished value is handed out instead.
+	 *
+	 * @return the result, the unfinished value on a cycle or null on a cycle before there is a value
+	 */
+	private <T> T await(Pending<T> pending){
+		if(!pending.done.isDone()){
+			Thread self=Thread.currentThread();
+			waits.put(self, pending);
+			try{
+				if(waitsOn(pending, self)) return pending.value;
+				return pending.done.join();
+			}catch(CompletionException e){
+				throw UtilL.uncheckedThrow(e.getCause());
+			}finally{
+				waits.remove(self);
+			}
+		}
+		try{
+			return pending.done.join();
+		}catch(CompletionException e){
+			throw UtilL.uncheckedThrow(e.getCause());
+		}
+	}
+	
+	/**
+	 * @return true if following the owners of unfinished work and what they wait for leads back to the thread
+	 */
+	private boolean waitsOn(Pending<?> pending, Thread thread){
+		Pending<?> p=pending;
+		for(int i=0, j=waits.size()+1;i<=j;i++){
+			if(p.owner==thread) return true;
+			p=waits.get(p.owner);
+			if(p==null||p.done.isDone()) return false;
+		}
+		return false;
+	}
+	
+	/**
+	 * Asks the underlying source to prepare its data in bulk, e.g. decompress all zstd frames in parallel.
+	 */
+	public void preload() throws IOException{
+		if(randomSource!=null) randomSource.preload();
+	}
+	
 	public Stream<FileBlockHeader> blocksByCode(BlockCode code){
-		return Arrays.stream(blocks).filter(b->b.code==code);
+		return IntStream.range(0, blocks.size()).filter(i->blocks.code(i)==code).mapToObj(blocks::header);
 	}
 	
 	public Stream<Struct.Instance> readSingleBlockByCode(BlockCode code){
@@ -282,6 +433,13 @@ public class BlendFile implements AutoCloseable, Comparable<BlendFile>{
 		return (Struct.Instance)readBlock(blockHeader);
 	}
 	
+	/**
+	 * @return a cursor over the elements of a block that reads them without creating an instance per element
+	 */
+	public StructCursor cursor(FileBlockHeader blockHeader){
+		return new StructCursor(blockHeader, this);
+	}
+	
 	Object readBlock(long pointer) throws BlendFileMissingBlock{
 		return readBlock(getBlock(pointer));
 	}
@@ -289,7 +447,7 @@ public class BlendFile implements AutoCloseable, Comparable<BlendFile>{
 	private Object parseBlock(FileBlockHeader blockHeader){
 		Struct struct=blockHeader.getStruct();
 		
-		TriFunction<Struct, FileBlockHeader, BlendFile, TypeOptimizations.InstanceComposite> optimization=typeOptimizations.get(struct.type.name);
+		TriFunction<Struct, FileBlockHeader, BlendFile, TypeOptimizations.InstanceComposite<?>> optimization=typeOptimizations.get(struct.type.name);
 		if(optimization!=null){
 			return optimization.apply(struct, blockHeader, this);
 		}
@@ -297,6 +455,9 @@ public class BlendFile implements AutoCloseable, Comparable<BlendFile>{
 		if(blockHeader.count==1){
 			return struct.new Instance(blockHeader, this);
 		}
+		if(ColumnarList.supports(struct, this)){
+			return new ColumnarList(struct, blockHeader, this);
+		}
 		if(blockHeader.count>100){
 			//noinspection AutoBoxing
 			LogUtil.println(struct.type, "should probably be optimized. Block has", blockHeader.count, "objects!");
@@ -306,75 +467,174 @@ public class BlendFile implements AutoCloseable, Comparable<BlendFile>{
 		return new BlockArrayList(blockHeader, this);
 	}
 	
+	/**
+	 * Placeholder in a block body cache while one thread decodes it, other threads asking for the same block wait for it.
+	 */
+	private static final class PendingBlock extends Pending<Object>{ }
+	
 	@NotNull
 	Object readBlock(FileBlockHeader blockHeader){
-		synchronized(this){
-			if(blockHeader.bodyCache==null){
-				Object obj=parseBlock(blockHeader);
-				blockHeader.bodyCache=new WeakReference<>(obj);
+		if(blockCache==null) return readBlockBody(blockHeader);
+		
+		Object obj=blockCache.get(blockCacheSegment, blockHeader);
+		if(obj==null){
+			obj=readBlockBody(blockHeader);
+			blockCache.put(blockCacheSegment, blockHeader, obj);
+		}
+		return obj;
+	}
+	
+	/**
+	 * Decodes a block or returns its cached body. Each block is published on its own, independent blocks decode in
+	 * parallel and concurrent requests for the same block share a single decode.
+	 */
+	private Object readBlockBody(FileBlockHeader blockHeader){
+		while(true){
+			Object slot=blockHeader.bodyCache;
+			
+			if(slot instanceof WeakReference){
+				Object obj=((WeakReference<?>)slot).get();
+				if(obj!=null) return obj;
+			}else if(slot instanceof PendingBlock){
+				Object obj=await((PendingBlock)slot);
+				if(obj==null) throw new IllegalStateException("Block cycle on "+blockHeader.code+" at "+blockHeader.oldPtr+" before it was parsed");
 				return obj;
 			}
 			
-			Object obj=blockHeader.bodyCache.get();
-			if(obj!=null) return obj;
-			
-			blockHeader.bodyCache=null;
+			PendingBlock pending=new PendingBlock();
+			if(!blockHeader.casBodyCache(slot, pending)) continue;
 			
-			return readBlock(blockHeader);
+			Object obj;
+			try{
+				obj=parseBlock(blockHeader);
+				pending.value=obj;
+			}catch(Throwable e){
+				blockHeader.casBodyCache(pending, null);
+				pending.done.completeExceptionally(e);
+				throw e;
+			}
+			blockHeader.casBodyCache(pending, new WeakReference<>(obj));
+			pending.done.complete(obj);
+			return obj;
 		}
 	}
 	
-	Map<Thread, BlendInputStream> inCacheMap=new HashMap<>();
+	private BlendInputStream getSourceAt(long pos) throws IOException{
+		if(randomSource!=null) return new BlendInputStream(randomSource.openAt(pos), header, pos);
+		return readers.acquire(pos);
+	}
 	
+	private void putSource(BlendInputStream c) throws IOException{
+		if(randomSource!=null){
+			c.close();
+			return;
+		}
+		readers.release(c);
+	}
 	
-	private BlendInputStream getSourceAt(long pos) throws IOException{
-		Thread ct=Thread.currentThread();
+	/**
+	 * Reads a cached block body from memory and continues from the source once it runs out.
+	 */
+	private final class RawView extends InputStream{
+		private final ByteBuffer  body;
+		private final long        end;
+		private       InputStream tail;
+		
+		private RawView(ByteBuffer body, long end){
+			this.body=body;
+			this.end=end;
+		}
 		
-		BlendInputStream inCache=inCacheMap.get(ct);
+		private InputStream tail() throws IOException{
+			if(tail==null) tail=randomSource!=null?randomSource.openAt(end):readers.acquire(end);
+			return tail;
+		}
 		
-		if(inCache==null){
-			inCache=reopen();
-			inCacheMap.put(ct, inCache);
+		@Override
+		public int read() throws IOException{
+			if(body.hasRemaining()) return body.get()&0xFF;
+			return tail().read();
 		}
 		
-		long toSkip=pos-inCache.position();
+		@Override
+		public int read(@NotNull byte[] b, int off, int len) throws IOException{
+			if(len==0) return 0;
+			if(!body.hasRemaining()) return tail().read(b, off, len);
+			
+			int n=Math.min(len, body.remaining());
+			body.get(b, off, n);
+			return n;
+		}
 		
-		if(toSkip<0){
-			inCache.close();
-			inCacheMap.remove(ct);
-			return getSourceAt(pos);
+		@Override
+		public long skip(long n) throws IOException{
+			if(n<=0) return 0;
+			if(!body.hasRemaining()) return tail().skip(n);
+			
+			int s=(int)Math.min(n, body.remaining());
+			body.position(body.position()+s);
+			return s;
 		}
 		
-		if(toSkip>0){
-			inCache.skipNBytes(toSkip);
+		@Override
+		public int available() throws IOException{
+			return body.hasRemaining()?body.remaining():tail==null?0:tail.available();
 		}
 		
-		BlendInputStream c=inCache;
-		inCacheMap.remove(ct);
-		return c;
+		@Override
+		public void close() throws IOException{
+			if(tail==null) return;
+			if(randomSource!=null) tail.close();
+			else readers.release((BlendInputStream)tail);
+			tail=null;
+		}
 	}
 	
-	private void putSource(BlendInputStream c) throws IOException{
-		BlendInputStream inCache=inCacheMap.put(Thread.currentThread(), c);
-		if(inCache!=null) inCache.close();
+	/**
+	 * @return reader over the raw block cache if the position is inside a block that can be cached, otherwise null.
+	 * Sources that are already in memory are never cached, they are read directly.
+	 */
+	private BlendInputStream getRawSourceAt(long pos) throws IOException{
+		if(rawBlockCache==null||blocks==null||randomSource!=null&&randomSource.isInMemory()) return null;
+		
+		int index=blocks.indexAtFilePos(pos);
+		if(index==-1) return null;
+		
+		int size=blocks.bodySize(index);
+		if(!rawBlockCache.fits(size)) return null;
+		
+		long       start=blocks.bodyFilePos(index);
+		ByteBuffer body =rawBlockCache.get(rawBlockCacheSegment, start);
+		if(body==null){
+			byte[]           data=new byte[size];
+			BlendInputStream s   =getSourceAt(start);
+			try{
+				s.readFully(data, 0, size);
+			}finally{
+				putSource(s);
+			}
+			body=rawBlockCache.put(rawBlockCacheSegment, start, data);
+		}
+		body.position((int)(pos-start));
+		return new BlendInputStream(new RawView(body, start+size), header, pos);
 	}
 	
 	<T> T reopen(long pos, UnsafeFunction<BlendInputStream, T, IOException> session) throws IOException{
-		BlendInputStream s=getSourceAt(pos);
+		BlendInputStream raw=getRawSourceAt(pos);
+		BlendInputStream s  =raw!=null?raw:getSourceAt(pos);
 		try{
 			return session.apply(s);
 		}finally{
-			putSource(s);
+			if(raw!=null) raw.close();
+			else putSource(s);
 		}
 	}
 	
 	void reopen(long pos, UnsafeConsumer<BlendInputStream, IOException> session) throws IOException{
-		BlendInputStream s=getSourceAt(pos);
-		try{
+		reopen(pos, s->{
 			session.accept(s);
-		}finally{
-			putSource(s);
-		}
+			return null;
+		});
 	}
 	
 	private InputStream openSource() throws IOException{
@@ -383,102 +643,83 @@ public class BlendFile implements AutoCloseable, Comparable<BlendFile>{
 		return s1;
 	}
 	
-	private ByteBuffer  fileCache;
-	private InputStream cacheFiller;
-	
 	private BlendInputStream reopen() throws IOException{
-		InputStream in;
-		
-		if(header.compressed){
-			if(cacheFiller==null){
-				cacheFiller=new GZIPInputStream(openSource());
-				fileCache=ByteBuffer.allocate(1<<16);
-			}
-			
-			class CacheReader extends InputStream{
-				int pos;
-				
-				@SuppressWarnings("SynchronizeOnNonFinalField")
-				private void ensure(int newBytes) throws IOException{
-					synchronized(fileCache){
-						int newLimit=pos+newBytes;
-						int toRead  =newLimit-fileCache.position();
-						
-						while(toRead>0){
-							if(!fileCache.hasRemaining()){//buffer is full, need to grow
-								
-								ByteBuffer old=fileCache;
-								fileCache=ByteBuffer.allocate(old.capacity()<<1);
-								old.flip();
-								fileCache.put(old);
-								continue;
-							}
-							
-							int read=cacheFiller.read(fileCache.array(), fileCache.position(), fileCache.remaining());
-							fileCache.position(fileCache.position()+read);
-							
-							if(read<=0){
-								cacheFiller.close();
-								cacheFiller=null;
-								break;
-							}
-							toRead-=read;
-							
-						}
-					}
-				}
-				
-				@Override
-				public int read(@NotNull byte[] b, int off, int len) throws IOException{
-					ensure(off+len);
-					System.arraycopy(fileCache.array(), pos, b, off, len);
-					pos+=len;
-					return len;
-				}
-				
-				@Override
-				public long skip(long n) throws IOException{
-					ensure((int)n);
-					pos+=n;
-					return n;
-				}
-				
-				@Override
-				public int read() throws IOException{
-					ensure(1);
-					byte b=fileCache.get(pos);
-					pos++;
-					return b;
-				}
-			}
-			in=new CacheReader();
-		}else in=openSource();
+		InputStream in=randomSource!=null?randomSource.openAt(0):openSource();
 		
 		return new BlendInputStream(in, header);
 	}
 	
-	@SuppressWarnings("AutoBoxing")
 	FileBlockHeader getBlock(long ptr) throws BlendFileMissingBlock{
-		FileBlockHeader b=blockPtrIndex.get(ptr);
-		if(b==null){
+		int index=blocks.indexOf(ptr);
+		if(index==-1){
 			throw new BlendFileMissingBlock("invalid block ptr: "+ptr);
 		}
-		return b;
+		return blocks.header(index);
 	}
 	
 	
 	@Override
 	public void close() throws IOException{
-		if(cacheFiller!=null){
-			cacheFiller.close();
-			cacheFiller=null;
-			fileCache=null;
+		if(randomSource!=null){
+			randomSource.close();
+			randomSource=null;
 		}
+		readers.close();
+		if(blockCache!=null) blockCache.invalidate(blockCacheSegment);
+		if(rawBlockCache!=null) rawBlockCache.invalidate(rawBlockCacheSegment);
+	}
+	
+	/**
+	 * Decodes the value a pointer in to the middle of a block points at. A pointer to an element of the block struct
+	 * gives that element, any other type gives the elements from the pointer to the end of the block, the same as a
+	 * pointer of that type to the start of a block.
+	 *
+	 * @return decoded value or null if the pointer is not inside any block or the target can not be decoded
+	 */
+	Object readInterior(long ptr, DnaType pointerType) throws IOException{
+		int index=blocks.indexContaining(ptr);
+		if(index==-1) return null;
 		
-		for(BlendInputStream inCache : inCacheMap.values()){
-			inCache.close();
+		FileBlockHeader block =blocks.header(index);
+		int             offset=(int)(ptr-block.oldPtr);
+		DnaType         raw   =pointerType.depointify();
+		Struct          struct=block.getStruct();
+		boolean         whole =struct.id!=0&&struct.length!=0&&offset%struct.length==0;
+		
+		if(raw.is("void")&&!raw.isPointer()){
+			if(!whole) return null;
+			raw=struct.type;
 		}
-		inCacheMap=null;
+		
+		//an element of the block, take it from the block body so it is the same instance as when reached through the list
+		if(whole&&!raw.isPointer()&&!raw.isArray()&&raw.is(struct.type.name)){
+			Object body=readBlock(block);
+			if(body instanceof List){
+				List<?> list   =(List<?>)body;
+				int     element=offset/struct.length;
+				return element<list.size()?list.get(element):null;
+			}
+			
+			//optimized bodies do not hand out elements, decode it on its own
+			if(offset+struct.length>block.bodySize) return null;
+			DnaType el=raw;
+			return reopen(block.bodyFilePos+offset, in->{
+				return DataParser.parse(el, in, this);
+			});
+		}
+		
+		int size =raw.size(this);
+		int count=size>0?(block.bodySize-offset)/size:0;
+		if(count==0) return null;
+		
+		Object[] arr=new Object[count];
+		DnaType  el =raw;
+		reopen(block.bodyFilePos+offset, in->{
+			for(int i=0;i<arr.length;i++){
+				arr[i]=DataParser.parse(el, in, this);
+			}
+		});
+		return ArrayViewList.create(arr).obj2;
 	}
 	
 	@SuppressWarnings("AutoBoxing")
@@ -13,15 +13,23 @@ import static java.nio.ByteOrder.*;
 
 public class BlendFileHeader{
 	
+	public enum Compression{
+		NONE,
+		GZIP,
+		ZSTD
+	}
+	
 	public static final int BYTE_SIZE=7+1+1+3;
 	
-	public final int       ptrSize;
-	public final ByteOrder order;
-	public final byte[]    version;
-	public final boolean   compressed;
+	public final int         ptrSize;
+	public final ByteOrder   order;
+	public final byte[]      version;
+	public final Compression compression;
+	public final boolean     compressed;
 	
-	BlendFileHeader(InputStream in, boolean compressed) throws IOException{
-		this.compressed=compressed;
+	BlendFileHeader(InputStream in, Compression compression) throws IOException{
+		this.compression=compression;
+		compressed=compression!=Compression.NONE;
 		if(!Arrays.equals(readNBytes(in, 7), "BLENDER".getBytes(StandardCharsets.US_ASCII))){
 			throw new BlendFileIOException("Not a blend file");
 		}
@@ -14,9 +14,15 @@ public class BlendInputStream extends InputStream{
 	private final InputStream     in;
 	public final  BlendFileHeader header;
 	
-	private final ByteBuffer bb2;
-	private final ByteBuffer bb4;
-	private final ByteBuffer bb8;
+	/**
+	 * Size of the read window, also the largest chunk {@link #readChunk(int)} can return.
+	 */
+	static final int CHUNK_SIZE=1<<13;
+	
+	private final byte[]     window=new byte[CHUNK_SIZE];
+	private final ByteBuffer windowBuffer;
+	private       int        windowPos;
+	private       int        windowLimit;
 	
 	private long position;
 	
@@ -28,50 +34,147 @@ public class BlendInputStream extends InputStream{
 	public BlendInputStream(InputStream in, BlendFileHeader header){
 		this.in=in;
 		this.header=header;
-		
-		bb2=ByteBuffer.allocate(2).order(header.order);
-		bb4=ByteBuffer.allocate(4).order(header.order);
-		bb8=ByteBuffer.allocate(8).order(header.order);
-	}
-	
-	private ByteBuffer read(ByteBuffer bb) throws IOException{
-		byte[] a   =bb.array();
-		int    read=read(a);
-		if(read==-1) throw new BlendFileIOException("Unexpected file end");
-		if(read!=a.length){
-			bb.position(read);
-			while(bb.hasRemaining()){
-				int i1=read();
-				if(i1==-1) throw new BlendFileIOException("Unexpected file end");
-				bb.put((byte)i1);
+		windowBuffer=ByteBuffer.wrap(window).order(header.order);
+	}
+	
+	void readFully(byte[] b, int off, int len) throws IOException{
+		while(len>0){
+			int read=read(b, off, len);
+			if(read==-1) throw new BlendFileIOException("Unexpected file end");
+			off+=read;
+			len-=read;
+		}
+	}
+	
+	/**
+	 * @return false if the source has ended
+	 */
+	private boolean fillWindow() throws IOException{
+		int read=in.read(window, windowLimit, window.length-windowLimit);
+		if(read<=0) return false;
+		windowLimit+=read;
+		return true;
+	}
+	
+	/**
+	 * Makes sure the next bytes are in the read window and consumes them.
+	 *
+	 * @return index of the first consumed byte in the window
+	 */
+	private int take(int bytes) throws IOException{
+		if(windowLimit-windowPos<bytes){
+			if(window.length-windowPos<bytes){
+				int remaining=windowLimit-windowPos;
+				System.arraycopy(window, windowPos, window, 0, remaining);
+				windowPos=0;
+				windowLimit=remaining;
 			}
+			while(windowLimit-windowPos<bytes){
+				if(!fillWindow()) throw new BlendFileIOException("Unexpected file end");
+			}
+		}
+		int start=windowPos;
+		windowPos+=bytes;
+		position+=bytes;
+		return start;
+	}
+	
+	/**
+	 * Reads the next bytes in to the read window, ordered in file byte order. The buffer is only valid until the next read.
+	 *
+	 * @param bytes number of bytes to read, up to {@link #CHUNK_SIZE}
+	 */
+	ByteBuffer readChunk(int bytes) throws IOException{
+		if(bytes>CHUNK_SIZE) throw new IllegalArgumentException(bytes+" > "+CHUNK_SIZE);
+		int start=take(bytes);
+		
+		windowBuffer.limit(start+bytes);
+		windowBuffer.position(start);
+		ByteBuffer chunk=windowBuffer.slice().order(header.order);
+		windowBuffer.clear();
+		return chunk;
+	}
+	
+	/**
+	 * Reads count elements of stride bytes each. Batches that fit in the read window come from it as with
+	 * {@link #readChunk(int)}, anything larger is read in to its own buffer.
+	 */
+	ByteBuffer readElements(int count, int stride) throws IOException{
+		int bytes=count*stride;
+		if(bytes<=CHUNK_SIZE) return readChunk(bytes);
+		
+		byte[] elements=new byte[bytes];
+		readFully(elements, 0, bytes);
+		return ByteBuffer.wrap(elements).order(header.order);
+	}
+	
+	public void readShorts(short[] dest, int off, int len) throws IOException{
+		while(len>0){
+			int n=Math.min(len, CHUNK_SIZE/2);
+			readChunk(n*2).asShortBuffer().get(dest, off, n);
+			off+=n;
+			len-=n;
+		}
+	}
+	
+	public void readInts(int[] dest, int off, int len) throws IOException{
+		while(len>0){
+			int n=Math.min(len, CHUNK_SIZE/4);
+			readChunk(n*4).asIntBuffer().get(dest, off, n);
+			off+=n;
+			len-=n;
+		}
+	}
+	
+	public void readLongs(long[] dest, int off, int len) throws IOException{
+		while(len>0){
+			int n=Math.min(len, CHUNK_SIZE/8);
+			readChunk(n*8).asLongBuffer().get(dest, off, n);
+			off+=n;
+			len-=n;
+		}
+	}
+	
+	public void readFloats(float[] dest, int off, int len) throws IOException{
+		while(len>0){
+			int n=Math.min(len, CHUNK_SIZE/4);
+			readChunk(n*4).asFloatBuffer().get(dest, off, n);
+			off+=n;
+			len-=n;
+		}
+	}
+	
+	public void readDoubles(double[] dest, int off, int len) throws IOException{
+		while(len>0){
+			int n=Math.min(len, CHUNK_SIZE/8);
+			readChunk(n*8).asDoubleBuffer().get(dest, off, n);
+			off+=n;
+			len-=n;
 		}
-		bb.position(0);
-		return bb;
 	}
 	
 	String read4ByteString() throws IOException{
-		return new String(read(bb4).array());
+		return new String(window, take(4), 4);
 	}
 	
 	short read2BInt() throws IOException{
-		return read(bb2).getShort();
+		return windowBuffer.getShort(take(2));
 	}
 	
 	int read4BInt() throws IOException{
-		return read(bb4).getInt();
+		return windowBuffer.getInt(take(4));
 	}
 	
 	float read4BFloat() throws IOException{
-		return read(bb4).getFloat();
+		return windowBuffer.getFloat(take(4));
 	}
 	
 	double read8BFloat() throws IOException{
-		return read(bb8).getDouble();
+		return windowBuffer.getDouble(take(8));
 	}
 	
 	long read8BInt() throws IOException{
-		return read(bb8).getLong();
+		return windowBuffer.getLong(take(8));
 	}
 	
 	long readPtr() throws IOException{
@@ -90,9 +193,7 @@ public class BlendInputStream extends InputStream{
 	
 	public short[] readShortArray(int arraySize) throws IOException{
 		short[] array=new short[arraySize];
-		for(int i=0;i<array.length;i++){
-			array[i]=read2BInt();
-		}
+		readShorts(array, 0, arraySize);
 		return array;
 	}
 	
@@ -100,15 +201,29 @@ public class BlendInputStream extends InputStream{
 		String[]   array=new String[arraySize];
 		ByteBuffer bb   =ByteBuffer.allocate(64);
 		for(int i=0;i<array.length;i++){
-			int code;
-			while((code=read())!=0){
-				if(!bb.hasRemaining()){
+			while(true){
+				if(windowPos==windowLimit){
+					windowPos=windowLimit=0;
+					if(!fillWindow()) throw new BlendFileIOException("Unexpected file end");
+				}
+				
+				int end=windowPos;
+				while(end<windowLimit&&window[end]!=0) end++;
+				
+				int len=end-windowPos;
+				if(bb.remaining()<len){
 					ByteBuffer old=bb;
-					bb=ByteBuffer.allocate(bb.capacity()<<1);
+					bb=ByteBuffer.allocate(Math.max(bb.capacity()<<1, bb.position()+len));
 					old.flip();
 					bb.put(old);
 				}
-				bb.put((byte)code);
+				bb.put(window, windowPos, len);
+				
+				boolean terminated=end<windowLimit;
+				if(terminated) end++;
+				position+=end-windowPos;
+				windowPos=end;
+				if(terminated) break;
 			}
 			array[i]=new String(bb.array(), 0, bb.position(), StandardCharsets.UTF_8);
 			bb.clear();
@@ -118,15 +233,34 @@ public class BlendInputStream extends InputStream{
 	
 	@Override
 	public int read() throws IOException{
-		int b=in.read();
-		if(b!=-1) position++;
-		return b;
+		if(windowPos==windowLimit){
+			windowPos=windowLimit=0;
+			if(!fillWindow()) return -1;
+		}
+		position++;
+		return window[windowPos++]&0xFF;
 	}
 	
 	@Override
 	public int read(@NotNull byte[] b, int off, int len) throws IOException{
-		int read=in.read(b, off, len);
-		if(read!=-1) position+=read;
+		if(len==0) return 0;
+		
+		int buffered=windowLimit-windowPos;
+		if(buffered==0){
+			if(len >= window.length){
+				int read=in.read(b, off, len);
+				if(read!=-1) position+=read;
+				return read;
+			}
+			windowPos=windowLimit=0;
+			if(!fillWindow()) return -1;
+			buffered=windowLimit;
+		}
+		
+		int read=Math.min(len, buffered);
+		System.arraycopy(window, windowPos, b, off, read);
+		windowPos+=read;
+		position+=read;
 		return read;
 	}
 	
@@ -137,14 +271,20 @@ public class BlendInputStream extends InputStream{
 	
 	@Override
 	public long skip(long n) throws IOException{
-		long skipped=in.skip(n);
+		if(n<=0) return 0;
+		
+		int fromWindow=(int)Math.min(n, windowLimit-windowPos);
+		windowPos+=fromWindow;
+		
+		long skipped=fromWindow;
+		if(n>skipped) skipped+=in.skip(n-skipped);
 		position+=skipped;
 		return skipped;
 	}
 	
 	@Override
 	public int available() throws IOException{
-		return in.available();
+		return windowLimit-windowPos+in.available();
 	}
 	
 	public long position(){
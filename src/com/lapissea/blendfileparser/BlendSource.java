@@ -0,0 +1,32 @@
+package com.lapissea.blendfileparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Random access view over the (uncompressed) bytes of a blend file. Streams returned by {@link #openAt(long)} are independent and cheap to create.
+ */
+public interface BlendSource extends Closeable{
+	
+	InputStream openAt(long pos) throws IOException;
+	
+	/**
+	 * @return number of bytes in the source, or -1 while that is not known yet
+	 */
+	long size();
+	
+	/**
+	 * Hint that most of the file is about to be read. Sources that can prepare their data in bulk should do it now.
+	 */
+	default void preload() throws IOException{ }
+	
+	/**
+	 * @return true if reading is a copy out of memory the source already holds, so keeping another copy of its bytes
+	 * gains nothing
+	 */
+	default boolean isInMemory(){
+		return false;
+	}
+	
+}
@@ -0,0 +1,99 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.NotNull;
+
+import java.util.Objects;
+
+/**
+ * Keeps decoded block bodies strongly reachable up to a memory budget. What is kept and what is evicted is decided by
+ * its {@link CachePolicy}, least recently used first out by default. The size of a body is approximated by the size of
+ * the block in the file. One cache can be shared by any number of files so they compete for the same budget.
+ * <p>
+ * Bodies that are out of the cache stay reachable through their block for as long as something else holds on to them.
+ * The cache does not keep a file reachable, the bodies of a file that is dropped without being closed leave the cache
+ * with it.
+ */
+public class BlockCache{
+	
+	private final CachePolicy<Object> policy;
+	
+	/**
+	 * Least recently used cache.
+	 *
+	 * @param maxWeight memory budget in bytes of block bodies
+	 */
+	public BlockCache(long maxWeight){
+		this(new WeightedLru<>(maxWeight));
+	}
+	
+	/**
+	 * @param policy decides which bodies are kept, weights passed to it are block sizes in bytes
+	 */
+	public BlockCache(@NotNull CachePolicy<Object> policy){
+		this.policy=Objects.requireNonNull(policy);
+	}
+	
+	private static long weigh(FileBlockHeader block){
+		return Math.max(1, block.bodySize);
+	}
+	
+	/**
+	 * @return the part of the cache that holds the bodies of one file, only the file should hold on to it
+	 */
+	CachePolicy.Segment<Object> newSegment(){
+		return policy.newSegment();
+	}
+	
+	Object get(CachePolicy.Segment<Object> segment, FileBlockHeader block){
+		return policy.get(segment, block.bodyFilePos);
+	}
+	
+	void put(CachePolicy.Segment<Object> segment, FileBlockHeader block, Object body){
+		long w=weigh(block);
+		if(w>policy.maxWeight()) return;
+		policy.put(segment, block.bodyFilePos, body, w);
+	}
+	
+	/**
+	 * Drops every body decoded from a file.
+	 */
+	void invalidate(CachePolicy.Segment<Object> segment){
+		policy.invalidate(segment);
+	}
+	
+	public void clear(){
+		policy.clear();
+	}
+	
+	public long maxWeight(){
+		return policy.maxWeight();
+	}
+	
+	/**
+	 * @return approximate size in bytes of all cached bodies
+	 */
+	public long weight(){
+		return policy.weight();
+	}
+	
+	public int size(){
+		return policy.size();
+	}
+	
+	public long hits(){
+		return policy.hits();
+	}
+	
+	public long misses(){
+		return policy.misses();
+	}
+	
+	public long evictions(){
+		return policy.evictions();
+	}
+	
+	@Override
+	public String toString(){
+		return "BlockCache{"+size()+" blocks, "+weight()+"/"+maxWeight()+" bytes, hits="+hits()+", misses="+misses()+", evictions="+evictions()+"}";
+	}
+}
@@ -3,6 +3,8 @@ package com.lapissea.blendfileparser;
 import com.lapissea.blendfileparser.exceptions.BlendFileIOException;
 
 import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public enum BlockCode{
 	BRUSH("BR\0\0"),
@@ -39,11 +41,12 @@ public enum BlockCode{
 		this.id=id;
 	}
 	
+	private static final Map<String, BlockCode> BY_ID=Arrays.stream(BlockCode.values()).collect(Collectors.toMap(b->b.id, b->b));
+	
 	public static BlockCode getById(String id) throws BlendFileIOException{
-		return Arrays.stream(BlockCode.values())
-		             .filter(b->b.id.equals(id))
-		             .findAny()
-		             .orElseThrow(()->new BlendFileIOException("Unknown BlockCode: \""+id+"\""));
+		BlockCode code=BY_ID.get(id);
+		if(code==null) throw new BlendFileIOException("Unknown BlockCode: \""+id+"\"");
+		return code;
 	}
 	
 }
@@ -0,0 +1,128 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.LogUtil;
+import com.lapissea.util.Nullable;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the block table and raw DNA1 body of a blend file in a cache directory so a file that was already opened
+ * once does not have to be scanned again. An entry is keyed by the file path and only used while the file length,
+ * modification time and header still match and its payload passes a CRC32 check. Entries that fail to load are
+ * deleted so the file is scanned and stored again.
+ */
+final class BlockIndexCache{
+	
+	private static final int MAGIC=0x42424933;//BBI3
+	
+	static final class Entry{
+		final BlockTable table;
+		final byte[]     dna;
+		
+		Entry(BlockTable table, byte[] dna){
+			this.table=table;
+			this.dna=dna;
+		}
+	}
+	
+	private static File entryFile(File dir, File source) throws IOException{
+		String path=source.getCanonicalPath();
+		return new File(dir, Integer.toHexString(path.hashCode())+"-"+Long.toHexString(path.length())+".bbi");
+	}
+	
+	private static void writeKey(DataOutputStream out, File source, BlendFileHeader header) throws IOException{
+		out.writeInt(MAGIC);
+		out.writeUTF(source.getCanonicalPath());
+		out.writeLong(source.length());
+		out.writeLong(source.lastModified());
+		out.writeByte(header.ptrSize);
+		out.writeBoolean(header.order==ByteOrder.BIG_ENDIAN);
+		out.write(header.version);
+		out.writeByte(header.compression.ordinal());
+	}
+	
+	private static long checksum(byte[] payload){
+		CRC32 crc=new CRC32();
+		crc.update(payload);
+		return crc.getValue();
+	}
+	
+	@Nullable
+	static Entry load(File dir, File source, BlendFileHeader header){
+		File entry=null;
+		try{
+			entry=entryFile(dir, source);
+			if(!entry.isFile()) return null;
+			
+			ByteArrayOutputStream expected=new ByteArrayOutputStream();
+			writeKey(new DataOutputStream(expected), source, header);
+			byte[] key=expected.toByteArray();
+			
+			byte[] payload;
+			try(DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(entry), 1<<16))){
+				byte[] actual=new byte[key.length];
+				in.readFully(actual);
+				if(!Arrays.equals(key, actual)) return null;
+				
+				int  payloadSize=in.readInt();
+				long crc        =in.readLong();
+				if(payloadSize<0||payloadSize!=entry.length()-key.length-4-8) throw new IOException("Bad payload size "+payloadSize);
+				
+				payload=new byte[payloadSize];
+				in.readFully(payload);
+				if(checksum(payload)!=crc) throw new IOException("Checksum mismatch");
+			}
+			
+			DataInputStream in   =new DataInputStream(new ByteArrayInputStream(payload));
+			BlockTable      table=BlockTable.read(in, payload.length);
+			if(header.compression==BlendFileHeader.Compression.NONE&&table.bodiesEnd()>source.length()){
+				throw new IOException("Block table reaches past the end of "+source);
+			}
+			int             size =in.readInt();
+			if(size<0||size!=in.available()) throw new IOException("Bad DNA size "+size);
+			byte[] dna=new byte[size];
+			in.readFully(dna);
+			return new Entry(table, dna);
+		}catch(IOException|RuntimeException e){
+			if(entry!=null&&entry.isFile()&&!entry.delete()){
+				LogUtil.printlnEr("Failed to delete bad block index", entry, e);
+			}
+			return null;
+		}
+	}
+	
+	static void store(File dir, File source, BlendFileHeader header, BlockTable table, byte[] dna){
+		File tmp=null;
+		try{
+			File entry=entryFile(dir, source);
+			tmp=File.createTempFile("blend", ".bbi.tmp", dir);
+			
+			ByteArrayOutputStream payload=new ByteArrayOutputStream();
+			DataOutputStream      data   =new DataOutputStream(payload);
+			table.write(data);
+			data.writeInt(dna.length);
+			data.write(dna);
+			byte[] bytes=payload.toByteArray();
+			
+			try(DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1<<16))){
+				writeKey(out, source, header);
+				out.writeInt(bytes.length);
+				out.writeLong(checksum(bytes));
+				out.write(bytes);
+			}
+			
+			Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			tmp=null;
+		}catch(IOException e){
+			LogUtil.printlnEr("Failed to store block index for", source, e);
+		}finally{
+			//noinspection ResultOfMethodCallIgnored
+			if(tmp!=null) tmp.delete();
+		}
+	}
+}
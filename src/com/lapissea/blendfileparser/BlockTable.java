@@ -0,0 +1,230 @@
+package com.lapissea.blendfileparser;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static com.lapissea.blendfileparser.BlockCode.*;
+
+/**
+ * All block headers of a file stored as parallel primitive arrays. {@link FileBlockHeader} objects are only created
+ * when they are asked for and then kept so their body cache stays attached.
+ */
+final class BlockTable{
+	
+	private static final BlockCode[] CODES=BlockCode.values();
+	
+	/**
+	 * Walks all block headers of a file, the raw DNA1 body is handed to dnaSetter.
+	 */
+	static BlockTable scan(BlendInputStream in, Consumer<byte[]> dnaSetter) throws IOException{
+		BlockTable table=new BlockTable(256);
+		while(true){
+			BlockCode code     =BlockCode.getById(in.read4ByteString());
+			int       bodySize =in.read4BInt();
+			long      oldPtr   =in.readPtr();
+			int       sdnaIndex=in.read4BInt();
+			int       count    =in.read4BInt();
+			if(code==END) break;
+			
+			table.add(code, bodySize, oldPtr, sdnaIndex, count, in.position());
+			
+			if(code==DNA1){
+				byte[] dna=new byte[bodySize];
+				in.readFully(dna, 0, bodySize);
+				dnaSetter.accept(dna);
+			}else in.skipNBytes(bodySize);
+		}
+		return table;
+	}
+	
+	/**
+	 * Bytes one block takes in {@link #write(DataOutputStream)}. Codes are stored as their 4 byte id from the file, not
+	 * as the enum ordinal, so stored tables stay valid when {@link BlockCode} changes.
+	 */
+	private static final int CODE_ID_SIZE     =4;
+	private static final int STORED_BLOCK_SIZE=CODE_ID_SIZE+4+8+4+4+8;
+	
+	/**
+	 * @param maxBytes bytes left in the input, a table that claims more blocks than fit is rejected before allocating
+	 */
+	static BlockTable read(DataInputStream in, long maxBytes) throws IOException{
+		int size=in.readInt();
+		if(size<0||(long)size*STORED_BLOCK_SIZE>maxBytes-4) throw new IOException("Bad block table size "+size);
+		
+		BlockTable table=new BlockTable(Math.max(size, 1));
+		table.size=size;
+		byte[] ids=new byte[size*CODE_ID_SIZE];
+		in.readFully(ids);
+		for(int i=0;i<size;i++){
+			table.code[i]=(byte)BlockCode.getById(new String(ids, i*CODE_ID_SIZE, CODE_ID_SIZE, StandardCharsets.ISO_8859_1)).ordinal();
+		}
+		for(int i=0;i<size;i++) table.bodySize[i]=in.readInt();
+		for(int i=0;i<size;i++) table.oldPtr[i]=in.readLong();
+		for(int i=0;i<size;i++) table.sdnaIndex[i]=in.readInt();
+		for(int i=0;i<size;i++) table.count[i]=in.readInt();
+		for(int i=0;i<size;i++) table.bodyFilePos[i]=in.readLong();
+		
+		for(int i=0;i<size;i++){
+			if(table.bodySize[i]<0||table.count[i]<0||table.bodyFilePos[i]<0){
+				throw new IOException("Bad block "+i);
+			}
+		}
+		return table;
+	}
+	
+	void write(DataOutputStream out) throws IOException{
+		out.writeInt(size);
+		for(int i=0;i<size;i++) out.write(CODES[code[i]].id.getBytes(StandardCharsets.ISO_8859_1));
+		for(int i=0;i<size;i++) out.writeInt(bodySize[i]);
+		for(int i=0;i<size;i++) out.writeLong(oldPtr[i]);
+		for(int i=0;i<size;i++) out.writeInt(sdnaIndex[i]);
+		for(int i=0;i<size;i++) out.writeInt(count[i]);
+		for(int i=0;i<size;i++) out.writeLong(bodyFilePos[i]);
+	}
+	
+	private int    size;
+	private byte[] code;
+	private int[]  bodySize;
+	private long[] oldPtr;
+	private int[]  sdnaIndex;
+	private int[]  count;
+	private long[] bodyFilePos;
+	
+	private FileBlockHeader[] headers;
+	private LongIndexMap      ptrIndex;
+	private long[]            sortedPtr;
+	private Dna1              dna;
+	
+	BlockTable(int capacity){
+		code=new byte[capacity];
+		bodySize=new int[capacity];
+		oldPtr=new long[capacity];
+		sdnaIndex=new int[capacity];
+		count=new int[capacity];
+		bodyFilePos=new long[capacity];
+	}
+	
+	void add(BlockCode code, int bodySize, long oldPtr, int sdnaIndex, int count, long bodyFilePos){
+		if(ptrIndex!=null) throw new IllegalStateException("Table already finished");
+		
+		if(size==this.code.length){
+			int newSize=size<<1;
+			this.code=Arrays.copyOf(this.code, newSize);
+			this.bodySize=Arrays.copyOf(this.bodySize, newSize);
+			this.oldPtr=Arrays.copyOf(this.oldPtr, newSize);
+			this.sdnaIndex=Arrays.copyOf(this.sdnaIndex, newSize);
+			this.count=Arrays.copyOf(this.count, newSize);
+			this.bodyFilePos=Arrays.copyOf(this.bodyFilePos, newSize);
+		}
+		
+		this.code[size]=(byte)code.ordinal();
+		this.bodySize[size]=bodySize;
+		this.oldPtr[size]=oldPtr;
+		this.sdnaIndex[size]=sdnaIndex;
+		this.count[size]=count;
+		this.bodyFilePos[size]=bodyFilePos;
+		size++;
+	}
+	
+	/**
+	 * Builds the pointer indices. No blocks can be added after this.
+	 */
+	void finish(Dna1 dna){
+		this.dna=dna;
+		headers=new FileBlockHeader[size];
+		
+		ptrIndex=new LongIndexMap(size);
+		for(int i=0;i<size;i++){
+			ptrIndex.put(oldPtr[i], i);
+		}
+		
+		sortedPtr=Arrays.copyOf(oldPtr, size);
+		Arrays.sort(sortedPtr);
+	}
+	
+	int size(){
+		return size;
+	}
+	
+	/**
+	 * @return file position just after the last block body
+	 */
+	long bodiesEnd(){
+		long end=0;
+		for(int i=0;i<size;i++){
+			end=Math.max(end, bodyFilePos[i]+bodySize[i]);
+		}
+		return end;
+	}
+	
+	/**
+	 * @return index of the block with the old pointer or -1 if there is none
+	 */
+	int indexOf(long ptr){
+		return ptrIndex.get(ptr);
+	}
+	
+	/**
+	 * @return index of the block whose body contains the pointer or -1 if there is none
+	 */
+	int indexContaining(long ptr){
+		int i=Arrays.binarySearch(sortedPtr, ptr);
+		if(i<0) i=-i-2;
+		if(i<0) return -1;
+		
+		int index=ptrIndex.get(sortedPtr[i]);
+		return ptr-oldPtr[index]<bodySize[index]?index:-1;
+	}
+	
+	/**
+	 * @return index of the block whose body contains the file position or -1 if there is none
+	 */
+	int indexAtFilePos(long pos){
+		int i=Arrays.binarySearch(bodyFilePos, 0, size, pos);
+		if(i<0) i=-i-2;
+		if(i<0) return -1;
+		return pos-bodyFilePos[i]<bodySize[i]?i:-1;
+	}
+	
+	BlockCode code(int index){
+		return CODES[code[index]];
+	}
+	
+	int bodySize(int index){
+		return bodySize[index];
+	}
+	
+	long oldPtr(int index){
+		return oldPtr[index];
+	}
+	
+	int sdnaIndex(int index){
+		return sdnaIndex[index];
+	}
+	
+	int count(int index){
+		return count[index];
+	}
+	
+	long bodyFilePos(int index){
+		return bodyFilePos[index];
+	}
+	
+	FileBlockHeader header(int index){
+		FileBlockHeader h=headers[index];
+		if(h!=null) return h;
+		
+		synchronized(this){
+			h=headers[index];
+			if(h==null){
+				h=new FileBlockHeader(this, index, dna.getStruct(sdnaIndex[index]));
+				headers[index]=h;
+			}
+			return h;
+		}
+	}
+}
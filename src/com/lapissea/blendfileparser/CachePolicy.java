@@ -0,0 +1,48 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.Nullable;
+
+/**
+ * Decides what a {@link BlockCache} keeps and what it evicts. Values are kept per file in a {@link Segment} that only the
+ * file holds on to, a policy must not keep segments reachable so a file that is dropped without being closed can be
+ * collected together with its values. Implementations have to be thread safe, a cache can be shared between files.
+ *
+ * @see BlockCache#BlockCache(CachePolicy)
+ */
+public interface CachePolicy<V>{
+	
+	/**
+	 * Values of one file, created by the policy that stores them.
+	 */
+	interface Segment<V>{ }
+	
+	Segment<V> newSegment();
+	
+	@Nullable
+	V get(Segment<V> segment, long pos);
+	
+	/**
+	 * Stores a value and evicts others until the budget is met. The caller makes sure the weight is within
+	 * {@link #maxWeight()} on its own.
+	 */
+	void put(Segment<V> segment, long pos, V value, long weight);
+	
+	/**
+	 * Drops every value of a segment.
+	 */
+	void invalidate(Segment<V> segment);
+	
+	void clear();
+	
+	long maxWeight();
+	
+	long weight();
+	
+	int size();
+	
+	long hits();
+	
+	long misses();
+	
+	long evictions();
+}
@@ -0,0 +1,143 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+class ChannelSource implements BlendSource{
+	
+	private static final int BUFFER_SIZE=1<<13;
+	
+	private class View extends InputStream{
+		
+		private       long       pos;
+		private final ByteBuffer buffer=ByteBuffer.allocate(BUFFER_SIZE);
+		
+		private View(long pos){
+			this.pos=pos;
+			buffer.limit(0);
+		}
+		
+		private boolean fill() throws IOException{
+			if(pos>=size) return false;
+			buffer.clear();
+			
+			long readPos=pos;
+			while(buffer.hasRemaining()&&readPos<size){
+				int read=readAt(buffer, readPos);
+				if(read==-1) break;
+				readPos+=read;
+			}
+			buffer.flip();
+			return buffer.hasRemaining();
+		}
+		
+		@Override
+		public int read() throws IOException{
+			if(!buffer.hasRemaining()&&!fill()) return -1;
+			pos++;
+			return buffer.get()&0xFF;
+		}
+		
+		@Override
+		public int read(@NotNull byte[] b, int off, int len) throws IOException{
+			if(len==0) return 0;
+			
+			if(!buffer.hasRemaining()){
+				if(len>=BUFFER_SIZE){//no point in copying through the buffer
+					if(pos>=size) return -1;
+					int read=readAt(ByteBuffer.wrap(b, off, len), pos);
+					if(read>0) pos+=read;
+					return read;
+				}
+				if(!fill()) return -1;
+			}
+			
+			int now=Math.min(len, buffer.remaining());
+			buffer.get(b, off, now);
+			pos+=now;
+			return now;
+		}
+		
+		@Override
+		public long skip(long n){
+			if(n<=0) return 0;
+			long skipped=Math.min(n, size-pos);
+			pos+=skipped;
+			
+			if(skipped<buffer.remaining()) buffer.position(buffer.position()+(int)skipped);
+			else buffer.limit(0);
+			
+			return skipped;
+		}
+		
+		@Override
+		public int available(){
+			return (int)Math.min(Integer.MAX_VALUE, size-pos);
+		}
+	}
+	
+	private final    Path        path;
+	private volatile FileChannel channel;
+	private volatile boolean     closed;
+	private final    long        size;
+	
+	ChannelSource(File file) throws IOException{
+		path=file.toPath();
+		channel=FileChannel.open(path, READ);
+		size=channel.size();
+	}
+	
+	/**
+	 * Positional read that survives the channel being closed by an interrupt of any reading thread. The channel is
+	 * reopened and the interrupt of the current thread is restored once the read is done.
+	 */
+	private int readAt(ByteBuffer dest, long pos) throws IOException{
+		boolean interrupted=false;
+		try{
+			while(true){
+				FileChannel c=channel;
+				try{
+					return c.read(dest, pos);
+				}catch(ClosedChannelException e){
+					if(closed) throw new IOException("Source closed", e);
+					if(e instanceof ClosedByInterruptException) interrupted|=Thread.interrupted();
+					reopenChannel(c);
+				}
+			}
+		}finally{
+			if(interrupted) Thread.currentThread().interrupt();
+		}
+	}
+	
+	private synchronized void reopenChannel(FileChannel closedChannel) throws IOException{
+		if(closed||channel!=closedChannel) return;
+		channel=FileChannel.open(path, READ);
+	}
+	
+	@Override
+	public InputStream openAt(long pos) throws IOException{
+		if(closed) throw new IOException("Source closed");
+		return new View(pos);
+	}
+	
+	@Override
+	public long size(){
+		return size;
+	}
+	
+	@Override
+	public synchronized void close() throws IOException{
+		closed=true;
+		channel.close();
+	}
+}
@@ -0,0 +1,123 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Base for sources that can only produce their bytes in whole chunks, such as independently compressed blocks.
+ * Recently used chunks are kept in a small LRU shared by all readers.
+ */
+abstract class ChunkedSource implements BlendSource{
+	
+	private class View extends InputStream{
+		
+		private long   pos;
+		private int    chunkIndex=-1;
+		private long   chunkStart;
+		private byte[] chunk;
+		
+		private View(long pos){
+			this.pos=pos;
+		}
+		
+		private byte[] chunk() throws IOException{
+			if(chunk==null||pos<chunkStart||pos-chunkStart>=chunk.length){
+				chunkIndex=chunkIndex(pos);
+				chunkStart=chunkStart(chunkIndex);
+				chunk=getChunk(chunkIndex);
+			}
+			return chunk;
+		}
+		
+		@Override
+		public int read() throws IOException{
+			if(pos>=size()) return -1;
+			byte b=chunk()[(int)(pos-chunkStart)];
+			pos++;
+			return b&0xFF;
+		}
+		
+		@Override
+		public int read(@NotNull byte[] b, int off, int len) throws IOException{
+			if(len==0) return 0;
+			long size=size();
+			if(pos>=size) return -1;
+			
+			int read=0;
+			while(read<len&&pos<size){
+				byte[] c     =chunk();
+				int    cStart=(int)(pos-chunkStart);
+				int    now   =Math.min(len-read, c.length-cStart);
+				System.arraycopy(c, cStart, b, off+read, now);
+				read+=now;
+				pos+=now;
+			}
+			return read;
+		}
+		
+		@Override
+		public long skip(long n){
+			if(n<=0) return 0;
+			long skipped=Math.min(n, size()-pos);
+			pos+=skipped;
+			return skipped;
+		}
+		
+		@Override
+		public int available(){
+			return (int)Math.min(Integer.MAX_VALUE, size()-pos);
+		}
+	}
+	
+	private final Map<Integer, byte[]> chunkCache;
+	
+	protected ChunkedSource(int cacheChunks){
+		chunkCache=new LinkedHashMap<Integer, byte[]>(cacheChunks*2, 0.75F, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest){
+				return size()>cacheChunks;
+			}
+		};
+	}
+	
+	protected abstract int chunkIndex(long pos);
+	
+	protected abstract long chunkStart(int chunkIndex);
+	
+	protected abstract byte[] readChunk(int chunkIndex) throws IOException;
+	
+	protected abstract boolean isOpen();
+	
+	protected byte[] getChunk(int chunkIndex) throws IOException{
+		synchronized(chunkCache){
+			//noinspection AutoBoxing
+			byte[] chunk=chunkCache.get(chunkIndex);
+			if(chunk!=null) return chunk;
+		}
+		
+		byte[] chunk=readChunk(chunkIndex);
+		
+		synchronized(chunkCache){
+			//noinspection AutoBoxing
+			chunkCache.put(chunkIndex, chunk);
+		}
+		return chunk;
+	}
+	
+	@Override
+	public InputStream openAt(long pos) throws IOException{
+		if(!isOpen()) throw new IOException("Source closed");
+		return new View(pos);
+	}
+	
+	@Override
+	public void close() throws IOException{
+		synchronized(chunkCache){
+			chunkCache.clear();
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.NotNull;
+import com.lapissea.util.UtilL;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Block of a struct made only out of primitives and fixed primitive arrays. Every field is decoded in to its own
+ * primitive column, arrays are stored flattened with all of their values per element. Instances are only created when
+ * the block is used as a list.
+ */
+public class ColumnarList extends AbstractList<Struct.Instance> implements RandomAccess{
+	
+	/**
+	 * @return true if every field of the struct can be stored in a primitive column
+	 */
+	static boolean supports(Struct struct, BlendFile blend){
+		if(struct.length<=0||struct.length>BlendInputStream.CHUNK_SIZE||struct.fieldOffset(struct.fields.size(), blend)!=struct.length) return false;
+		
+		for(Field field : struct.fields){
+			if(Struct.IGNORE_VALUES.contains(field.name)) continue;
+			
+			DnaType type=field.type;
+			if(type.isFunc||type.isPointer()) return false;
+			if(type.isArray()){
+				if(DataParser.primitiveArrayClass(type.name, 0)==null) return false;
+			}else if(DataParser.scalarKind(type)==DataParser.SCALAR_NONE) return false;
+		}
+		return true;
+	}
+	
+	@NotNull
+	public final Struct struct;
+	public final int    count;
+	
+	private final long      bodyFilePos;
+	private final BlendFile blend;
+	
+	private          FieldHandle[]     handles;
+	private volatile Object[]          columns;
+	private          Struct.Instance[] instances;
+	
+	ColumnarList(Struct struct, FileBlockHeader blockHeader, BlendFile blend){
+		this.struct=struct;
+		this.blend=blend;
+		count=blockHeader.count;
+		bodyFilePos=blockHeader.bodyFilePos;
+	}
+	
+	private static Object newColumn(byte kind, int size){
+		switch(kind){
+		case DataParser.SCALAR_BYTE:
+			return new byte[size];
+		case DataParser.SCALAR_SHORT:
+			return new short[size];
+		case DataParser.SCALAR_INT:
+			return new int[size];
+		case DataParser.SCALAR_LONG:
+			return new long[size];
+		case DataParser.SCALAR_FLOAT:
+			return new float[size];
+		case DataParser.SCALAR_DOUBLE:
+			return new double[size];
+		default:
+			throw new IllegalStateException();
+		}
+	}
+	
+	private static void readColumn(ByteBuffer bb, int off, byte kind, Object column, int index){
+		switch(kind){
+		case DataParser.SCALAR_BYTE:
+			((byte[])column)[index]=bb.get(off);
+			break;
+		case DataParser.SCALAR_SHORT:
+			((short[])column)[index]=bb.getShort(off);
+			break;
+		case DataParser.SCALAR_INT:
+			((int[])column)[index]=bb.getInt(off);
+			break;
+		case DataParser.SCALAR_LONG:
+			((long[])column)[index]=bb.getLong(off);
+			break;
+		case DataParser.SCALAR_FLOAT:
+			((float[])column)[index]=bb.getFloat(off);
+			break;
+		case DataParser.SCALAR_DOUBLE:
+			((double[])column)[index]=bb.getDouble(off);
+			break;
+		default:
+			throw new IllegalStateException();
+		}
+	}
+	
+	private static int kindSize(byte kind){
+		switch(kind){
+		case DataParser.SCALAR_BYTE:
+			return 1;
+		case DataParser.SCALAR_SHORT:
+			return 2;
+		case DataParser.SCALAR_INT:
+		case DataParser.SCALAR_FLOAT:
+			return 4;
+		default:
+			return 8;
+		}
+	}
+	
+	public synchronized ColumnarList allocate(){
+		if(columns!=null) return this;
+		
+		List<Field>   fields  =struct.fields;
+		FieldHandle[] handles =new FieldHandle[fields.size()];
+		Object[]      columns =new Object[fields.size()];
+		int[]         offsets =struct.fieldOffsets(blend);
+		int           stride  =struct.length;
+		int           batch   =Math.max(1, BlendInputStream.CHUNK_SIZE/stride);
+		
+		for(int f=0;f<fields.size();f++){
+			if(Struct.IGNORE_VALUES.contains(fields.get(f).name)) continue;
+			handles[f]=struct.field(fields.get(f).name);
+			columns[f]=newColumn(handles[f].kind, count*handles[f].elements);
+		}
+		
+		try{
+			blend.reopen(bodyFilePos, in->{
+				for(int i=0;i<count;i+=batch){
+					int        n =Math.min(batch, count-i);
+					ByteBuffer bb=in.readChunk(n*stride);
+					
+					for(int f=0;f<handles.length;f++){
+						FieldHandle handle=handles[f];
+						if(handle==null) continue;
+						
+						byte   kind    =handle.kind;
+						int    elements=handle.elements;
+						int    size    =kindSize(kind);
+						Object column  =columns[f];
+						for(int j=0;j<n;j++){
+							int off=j*stride+offsets[f];
+							int dst=(i+j)*elements;
+							for(int e=0;e<elements;e++){
+								readColumn(bb, off+e*size, kind, column, dst+e);
+							}
+						}
+					}
+				}
+			});
+		}catch(IOException e){
+			throw UtilL.uncheckedThrow(e);
+		}
+		
+		//columns are published last, a thread that sees them sees the handles too
+		this.handles=handles;
+		this.columns=columns;
+		return this;
+	}
+	
+	private Object[] columns(){
+		Object[] c=columns;
+		if(c==null) c=allocate().columns;
+		return c;
+	}
+	
+	private void check(FieldHandle handle){
+		if(handle.struct!=struct) throw new IllegalArgumentException(handle+" is not a field of "+struct.type.name);
+	}
+	
+	private Object scalarColumn(FieldHandle handle){
+		check(handle);
+		if(handle.field.type.isArray()) throw new IllegalStateException(handle.field+" is not a primitive");
+		return columns()[handle.index];
+	}
+	
+	/**
+	 * @return primitive array with the values of a field for every element, array fields are stored flattened
+	 */
+	public Object column(FieldHandle handle){
+		check(handle);
+		return columns()[handle.index];
+	}
+	
+	public Object column(String fieldName){
+		return column(struct.field(fieldName));
+	}
+	
+	public long getLong(FieldHandle handle, int index){
+		Object c=scalarColumn(handle);
+		switch(handle.kind){
+		case DataParser.SCALAR_BYTE:
+			return ((byte[])c)[index]&0xFF;
+		case DataParser.SCALAR_SHORT:
+			return ((short[])c)[index];
+		case DataParser.SCALAR_INT:
+			return ((int[])c)[index];
+		case DataParser.SCALAR_LONG:
+			return ((long[])c)[index];
+		case DataParser.SCALAR_FLOAT:
+			return (long)((float[])c)[index];
+		default:
+			return (long)((double[])c)[index];
+		}
+	}
+	
+	public int getInt(FieldHandle handle, int index){
+		Object c=scalarColumn(handle);
+		switch(handle.kind){
+		case DataParser.SCALAR_INT:
+			return ((int[])c)[index];
+		case DataParser.SCALAR_FLOAT:
+			return (int)((float[])c)[index];
+		case DataParser.SCALAR_DOUBLE:
+			return (int)((double[])c)[index];
+		default:
+			return (int)getLong(handle, index);
+		}
+	}
+	
+	public float getFloat(FieldHandle handle, int index){
+		Object c=scalarColumn(handle);
+		switch(handle.kind){
+		case DataParser.SCALAR_FLOAT:
+			return ((float[])c)[index];
+		case DataParser.SCALAR_DOUBLE:
+			return (float)((double[])c)[index];
+		default:
+			return getLong(handle, index);
+		}
+	}
+	
+	/**
+	 * Copies the values of an array field of one element.
+	 *
+	 * @return dest
+	 */
+	public float[] getFloatArray(FieldHandle handle, int index, float[] dest){
+		check(handle);
+		if(handle.kind!=DataParser.SCALAR_FLOAT||!handle.field.type.isArray()) throw new IllegalStateException(handle.field+" is not a float array");
+		System.arraycopy(columns()[handle.index], index*handle.elements, dest, 0, handle.elements);
+		return dest;
+	}
+	
+	private Object value(Object column, FieldHandle handle, int index){
+		DnaType type=handle.field.type;
+		if(!type.isArray()){
+			switch(handle.kind){
+			case DataParser.SCALAR_BYTE:
+				//noinspection AutoBoxing
+				return ((byte[])column)[index]&0xFF;
+			case DataParser.SCALAR_SHORT:
+				//noinspection AutoBoxing
+				return ((short[])column)[index];
+			case DataParser.SCALAR_INT:
+				//noinspection AutoBoxing
+				return ((int[])column)[index];
+			case DataParser.SCALAR_LONG:
+				//noinspection AutoBoxing
+				return ((long[])column)[index];
+			case DataParser.SCALAR_FLOAT:
+				//noinspection AutoBoxing
+				return ((float[])column)[index];
+			default:
+				//noinspection AutoBoxing
+				return ((double[])column)[index];
+			}
+		}
+		return arrayValue(column, index*handle.elements, type, 0);
+	}
+	
+	private static Object arrayValue(Object column, int start, DnaType type, int depth){
+		List<Integer> dims=type.arraySize;
+		int           len =dims.get(depth);
+		
+		if(depth==dims.size()-1){
+			Object arr=Array.newInstance(column.getClass().getComponentType(), len);
+			System.arraycopy(column, start, arr, 0, len);
+			return arr;
+		}
+		
+		int inner=1;
+		for(int i=depth+1;i<dims.size();i++){
+			inner*=dims.get(i);
+		}
+		
+		Object[] arr=(Object[])Array.newInstance(DataParser.primitiveArrayClass(type.name, dims.size()-1-depth), len);
+		for(int i=0;i<len;i++){
+			arr[i]=arrayValue(column, start+i*inner, type, depth+1);
+		}
+		return arr;
+	}
+	
+	@Override
+	public synchronized Struct.Instance get(int index){
+		if(index<0||index>=count) throw new IndexOutOfBoundsException(index+" "+count);
+		
+		if(instances==null) instances=new Struct.Instance[count];
+		Struct.Instance inst=instances[index];
+		if(inst==null){
+			Object[] columns=columns();
+			Object[] values =new Object[columns.length];
+			for(int f=0;f<columns.length;f++){
+				if(columns[f]==null) continue;
+				values[f]=value(columns[f], handles[f], index);
+			}
+			instances[index]=inst=struct.new Instance(values, blend, bodyFilePos+(long)index*struct.length);
+		}
+		return inst;
+	}
+	
+	@Override
+	public int size(){
+		return count;
+	}
+}
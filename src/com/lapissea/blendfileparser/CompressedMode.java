@@ -0,0 +1,23 @@
+package com.lapissea.blendfileparser;
+
+public enum CompressedMode{
+	/**
+	 * Inflates the file sequentially in to heap chunks, shared by all readers.
+	 */
+	HEAP,
+	/**
+	 * Like {@link #HEAP} but the inflated bytes are kept in direct (off heap) buffers.
+	 */
+	DIRECT,
+	/**
+	 * Like {@link #HEAP} but the inflated bytes are written to a memory mapped temporary file.
+	 */
+	TEMP_FILE,
+	/**
+	 * Builds a seekable chunk index of the inflated file so any position can be read by inflating a single chunk. The
+	 * index is stored and reused by later opens of the same unchanged file.
+	 *
+	 * @see ReadOptions#gzipIndexFile(java.io.File)
+	 */
+	INDEXED
+}
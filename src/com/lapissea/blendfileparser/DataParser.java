@@ -7,6 +7,8 @@ import com.lapissea.util.TextUtil;
 import com.lapissea.util.UtilL;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -68,70 +70,360 @@ class DataParser{
 		return type->typeArray(type, name);
 	}
 	
+	interface FieldReader{
+		Object read(BlendInputStream data, BlendFile blend) throws IOException;
+	}
+	
+	/**
+	 * Reads a value at a fixed offset of a buffer holding a whole struct.
+	 */
+	interface FlatReader{
+		Object read(ByteBuffer bb, int off, long filePos, BlendFile blend) throws IOException;
+	}
+	
+	/**
+	 * Decodes a struct from a single buffered read of its body with every field at a precomputed offset. Primitive
+	 * fields are read in place by their kind, only the rest go through a reader. Only possible when all fields are
+	 * values, pointers or structs that are flat themselves.
+	 */
+	static final class FlatPlan{
+		private final FlatReader[] readers;
+		private final byte[]       scalars;
+		private final int[]        offsets;
+		private final int          length;
+		
+		private FlatPlan(FlatReader[] readers, byte[] scalars, int[] offsets, int length){
+			this.readers=readers;
+			this.scalars=scalars;
+			this.offsets=offsets;
+			this.length=length;
+		}
+		
+		Object[] read(ByteBuffer bb, int off, long filePos, BlendFile blend) throws IOException{
+			FlatReader[] readers=this.readers;
+			byte[]       scalars=this.scalars;
+			int[]        offsets=this.offsets;
+			Object[]     values =new Object[readers.length];
+			for(int i=0;i<readers.length;i++){
+				byte kind=scalars[i];
+				if(kind!=SCALAR_NONE){
+					values[i]=scalarValue(bb, off+offsets[i], kind);
+					continue;
+				}
+				FlatReader reader=readers[i];
+				if(reader!=null) values[i]=reader.read(bb, off+offsets[i], filePos+offsets[i], blend);
+			}
+			return values;
+		}
+	}
+	
+	/**
+	 * @param fieldReaders flat readers of every field, null for ones that can not be read flat
+	 * @param fieldScalars primitive kind of every field
+	 * @return null if the struct can not be decoded flat
+	 */
+	private static FlatPlan compileFlat(Struct struct, FlatReader[] fieldReaders, byte[] fieldScalars, BlendFile blend){
+		List<Field>  fields =struct.fields;
+		FlatReader[] readers=new FlatReader[fields.size()];
+		byte[]       scalars=new byte[fields.size()];
+		int[]        offsets=struct.fieldOffsets(blend);
+		
+		for(int i=0;i<fields.size();i++){
+			if(Struct.IGNORE_VALUES.contains(fields.get(i).name)) continue;
+			
+			if(fieldReaders[i]==null) return null;
+			readers[i]=fieldReaders[i];
+			scalars[i]=fieldScalars[i];
+		}
+		
+		int length=offsets[fields.size()];
+		if(length!=struct.length) return null;
+		return new FlatPlan(readers, scalars, offsets, length);
+	}
+	
+	static final byte SCALAR_NONE  =0;
+	static final byte SCALAR_BYTE  =1;
+	static final byte SCALAR_SHORT =2;
+	static final byte SCALAR_INT   =3;
+	static final byte SCALAR_LONG  =4;
+	static final byte SCALAR_FLOAT =5;
+	static final byte SCALAR_DOUBLE=6;
+	
+	static byte scalarKind(DnaType type){
+		if(type.isFunc||type.isPointer()||type.isArray()) return SCALAR_NONE;
+		switch(type.name){
+		case "char":
+		case "uchar":
+			return SCALAR_BYTE;
+		case "short":
+		case "ushort":
+			return SCALAR_SHORT;
+		case "int":
+			return SCALAR_INT;
+		case "long":
+		case "uint64_t":
+		case "int64_t":
+			return SCALAR_LONG;
+		case "float":
+			return SCALAR_FLOAT;
+		case "double":
+			return SCALAR_DOUBLE;
+		default:
+			return SCALAR_NONE;
+		}
+	}
+	
+	static long scalarLong(ByteBuffer bb, int off, byte kind){
+		switch(kind){
+		case SCALAR_BYTE:
+			return bb.get(off)&0xFF;
+		case SCALAR_SHORT:
+			return bb.getShort(off);
+		case SCALAR_INT:
+			return bb.getInt(off);
+		case SCALAR_LONG:
+			return bb.getLong(off);
+		default:
+			throw new IllegalStateException();
+		}
+	}
+	
+	@SuppressWarnings("AutoBoxing")
+	private static Object scalarValue(ByteBuffer bb, int off, byte kind){
+		switch(kind){
+		case SCALAR_BYTE:
+			return bb.get(off)&0xFF;
+		case SCALAR_SHORT:
+			return bb.getShort(off);
+		case SCALAR_INT:
+			return bb.getInt(off);
+		case SCALAR_LONG:
+			return bb.getLong(off);
+		case SCALAR_FLOAT:
+			return bb.getFloat(off);
+		case SCALAR_DOUBLE:
+			return bb.getDouble(off);
+		default:
+			throw new IllegalStateException();
+		}
+	}
+	
+	static double scalarDouble(ByteBuffer bb, int off, byte kind){
+		switch(kind){
+		case SCALAR_FLOAT:
+			return bb.getFloat(off);
+		case SCALAR_DOUBLE:
+			return bb.getDouble(off);
+		default:
+			return scalarLong(bb, off, kind);
+		}
+	}
+	
+	/**
+	 * @return kind of primitive value the field holds, {@link #SCALAR_NONE} if it is not a single primitive
+	 */
+	static byte scalarKind(Struct struct, int fieldIndex, BlendFile blend){
+		return planOf(struct, blend).scalars[fieldIndex];
+	}
+	
+	/**
+	 * @return reader of a single field out of a buffer holding the whole struct, null if the field can not be read flat
+	 */
+	static FlatReader flatReader(Struct struct, int fieldIndex, BlendFile blend){
+		return planOf(struct, blend).fieldFlat[fieldIndex];
+	}
+	
+	/**
+	 * @return values of the struct decoded from a buffer holding its body, null if the struct can not be decoded flat
+	 * or {@link BlendFile#flatDecoders} is off
+	 */
+	static Object[] parseFlat(Struct struct, ByteBuffer bb, long filePos, BlendFile blend) throws IOException{
+		if(!blend.flatDecoders) return null;
+		FlatPlan flat=planOf(struct, blend).flat;
+		return flat==null?null:flat.read(bb, 0, filePos, blend);
+	}
+	
+	private static long readPtr(ByteBuffer bb, int off, BlendFile blend){
+		return blend.header.ptrSize==4?bb.getInt(off):bb.getLong(off);
+	}
+	
+	@SuppressWarnings("AutoBoxing")
+	private static FlatReader compileFlat(DnaType type, BlendFile blend){
+		if(type.isFunc) return null;
+		if(type.isPointer()){
+			if(type.isArray()) return null;
+			return (bb, off, pos, b)->resolvePointer(type, readPtr(bb, off, b), b);
+		}
+		
+		if(type.isArray()){
+			List<Integer> dims=type.arraySize;
+			int           len =dims.get(0);
+			
+			if(dims.size()>1){
+				DnaType    elementType=type.dearrify();
+				FlatReader element    =compileFlat(elementType, blend);
+				Class<?>   component  =primitiveArrayClass(type.name, dims.size()-1);
+				if(element==null||component==null) return null;
+				
+				int stride=elementType.size(blend);
+				return (bb, off, pos, b)->{
+					Object[] arr=(Object[])Array.newInstance(component, len);
+					for(int i=0;i<len;i++) arr[i]=element.read(bb, off+i*stride, pos+i*stride, b);
+					return arr;
+				};
+			}
+			
+			switch(type.name){
+			case "char":
+				return (bb, off, pos, b)->{
+					byte[] arr=new byte[len];
+					for(int i=0;i<len;i++) arr[i]=bb.get(off+i);
+					return arr;
+				};
+			case "short":
+				return (bb, off, pos, b)->{
+					short[] arr=new short[len];
+					for(int i=0;i<len;i++) arr[i]=bb.getShort(off+i*2);
+					return arr;
+				};
+			case "int":
+				return (bb, off, pos, b)->{
+					int[] arr=new int[len];
+					for(int i=0;i<len;i++) arr[i]=bb.getInt(off+i*4);
+					return arr;
+				};
+			case "float":
+				return (bb, off, pos, b)->{
+					float[] arr=new float[len];
+					for(int i=0;i<len;i++) arr[i]=bb.getFloat(off+i*4);
+					return arr;
+				};
+			default:
+				return null;
+			}
+		}
+		
+		switch(type.name){
+		case "void":
+			return (bb, off, pos, b)->readPtr(bb, off, b);
+		case "int":
+			return (bb, off, pos, b)->bb.getInt(off);
+		case "char":
+		case "uchar":
+			return (bb, off, pos, b)->bb.get(off)&0xFF;
+		case "short":
+		case "ushort":
+			return (bb, off, pos, b)->bb.getShort(off);
+		case "long":
+		case "uint64_t":
+		case "int64_t":
+			return (bb, off, pos, b)->bb.getLong(off);
+		case "float":
+			return (bb, off, pos, b)->bb.getFloat(off);
+		case "double":
+			return (bb, off, pos, b)->bb.getDouble(off);
+		case "ListBase":
+			return (bb, off, pos, b)->resolveListBase(readPtr(bb, off, b), b);
+		}
+		
+		Struct   struct=blend.dna.getStruct(type);
+		FlatPlan plan  =planOf(struct, blend).flat;
+		if(plan==null) return null;
+		return (bb, off, pos, b)->struct.new Instance(plan.read(bb, off, pos, b), b, pos);
+	}
+	
+	static Class<?> primitiveArrayClass(String name, int depth){
+		Class<?> c;
+		switch(name){
+		case "char":
+			c=byte.class;
+			break;
+		case "short":
+			c=short.class;
+			break;
+		case "int":
+			c=int.class;
+			break;
+		case "float":
+			c=float.class;
+			break;
+		default:
+			return null;
+		}
+		for(int i=0;i<depth;i++){
+			c=Array.newInstance(c, 0).getClass();
+		}
+		return c;
+	}
+	
+	private static StructPlan planOf(Struct struct, BlendFile blend){
+		StructPlan plan=struct.plan;
+		if(plan==null) struct.plan=plan=new StructPlan(struct, blend);
+		return plan;
+	}
+	
+	/**
+	 * Field readers of a struct resolved once. Ignored fields are turned in to skips, consecutive ones merged in to a single skip.
+	 * Structs that fit a {@link FlatPlan} are decoded with it when {@link BlendFile#flatDecoders} is on.
+	 */
+	static final class StructPlan{
+		private final FieldReader[] readers;
+		private final int[]         skips;
+		private final FlatReader[]  fieldFlat;
+		private final byte[]        scalars;
+		private final FlatPlan      flat;
+		
+		private StructPlan(Struct struct, BlendFile blend){
+			List<Field> fields=struct.fields;
+			readers=new FieldReader[fields.size()];
+			skips=new int[fields.size()];
+			fieldFlat=new FlatReader[fields.size()];
+			scalars=new byte[fields.size()];
+			
+			int skipStart=-1;
+			for(int i=0;i<fields.size();i++){
+				Field field=fields.get(i);
+				if(Struct.IGNORE_VALUES.contains(field.name)){
+					if(skipStart==-1) skipStart=i;
+					skips[skipStart]+=field.type.size(blend);
+				}else{
+					readers[i]=field.reader();
+					skipStart=-1;
+				}
+			}
+			
+			for(int i=0;i<fields.size();i++){
+				Field field=fields.get(i);
+				fieldFlat[i]=compileFlat(field.type, blend);
+				scalars[i]=Struct.IGNORE_VALUES.contains(field.name)?SCALAR_NONE:scalarKind(field.type);
+			}
+			
+			FlatPlan flat=compileFlat(struct, fieldFlat, scalars, blend);
+			this.flat=flat!=null&&flat.length<=BlendInputStream.CHUNK_SIZE?flat:null;
+		}
+		
+		Object[] read(BlendInputStream data, BlendFile blend) throws IOException{
+			if(flat!=null&&blend.flatDecoders){
+				long pos=data.position();
+				return flat.read(data.readChunk(flat.length), 0, pos, blend);
+			}
+			
+			FieldReader[] readers=this.readers;
+			Object[]      values =new Object[readers.length];
+			for(int i=0;i<readers.length;i++){
+				FieldReader reader=readers[i];
+				if(reader==null) data.skipNBytes(skips[i]);
+				else values[i]=reader.read(data, blend);
+			}
+			return values;
+		}
+	}
+	
 	private static final List<TypeParser> PRIMITIVES;
 	
 	static{
 		PRIMITIVES=Arrays.asList(
-				new TypeParserL(DnaType::isPointer, (type, data, blend)->{//first depointify anything
-					long ptr=data.readPtr();
-					if(ptr==0) return null;
-					else try{
-						
-						if(type.pointerLevel>1){
-							FileBlockHeader block=blend.getBlock(ptr);
-							
-							int     count=block.bodySize/blend.header.ptrSize*block.count;
-							DnaType raw  =type.depointify();
-							
-							Object[] arr=new Object[count];
-							blend.reopen(block.bodyFilePos, in->{
-								for(int i=0;i<count;i++){
-									arr[i]=DataParser.parse(raw, in, blend);
-								}
-							});
-							return ArrayViewList.create(arr).obj2;
-						}
-						
-						FileBlockHeader block =blend.getBlock(ptr);
-						Struct          struct=block.getStruct();
-						
-						if(!type.is(struct.type.name)){
-							
-							if(!type.is("void")){
-								DnaType raw      =type.depointify();
-								int     knownSize=raw.size(blend);
-								
-								if(block.bodySize%knownSize!=0){
-//								LogUtil.println(type, struct.type.name);
-//								LogUtil.println(block, knownSize, block.bodySize%knownSize);
-//								LogUtil.println(raw);
-//								type=type.castTo(struct.type.name);
-									
-									return blend.readBlock(block);
-//								throw new RuntimeException();//wtf??
-								}
-								
-								Object[] arr=new Object[block.bodySize/knownSize];
-								blend.reopen(block.bodyFilePos, in->{
-									for(int i=0;i<arr.length;i++){
-										arr[i]=DataParser.parse(raw, in, blend);
-									}
-								});
-								
-								return ArrayViewList.create(arr).obj2;
-							}
-							
-							if(block.getStruct().id==0){
-								return new Struct.UnknownData(blend, block);
-							}
-						}
-						
-						return blend.readBlock(block);
-						
-					}catch(BlendFileMissingBlock e){
-						return blend.strayPointer(ptr);
-					}
-				}),
+				new TypeParserL(DnaType::isPointer, (type, data, blend)->resolvePointer(type, data.readPtr(), blend)),//first depointify anything
 				new TypeParserL(t->t.isFunc, (t, d, b)->{
 					long ptr=d.readPtr();
 					if(ptr==0) return null;
@@ -150,17 +442,13 @@ class DataParser{
 						case 1:{
 							Integer num  =type.arraySize.get(0);
 							short[] array=new short[num];
-							for(int i=0;i<array.length;i++){
-								array[i]=data.read2BInt();
-							}
+							data.readShorts(array, 0, array.length);
 							return array;
 						}
 						case 2:{
 							short[][] array=new short[type.arraySize.get(0)][type.arraySize.get(1)];
 							for(short[] ai : array){
-								for(int j=0, j1=ai.length;j<j1;j++){
-									ai[j]=data.read2BInt();
-								}
+								data.readShorts(ai, 0, ai.length);
 							}
 							return array;
 						}
@@ -168,9 +456,7 @@ class DataParser{
 							short[][][] array=new short[type.arraySize.get(0)][type.arraySize.get(1)][type.arraySize.get(2)];
 							for(short[][] ai : array){
 								for(short[] aij : ai){
-									for(int k=0, k1=aij.length;k<k1;k++){
-										aij[k]=data.read2BInt();
-									}
+									data.readShorts(aij, 0, aij.length);
 								}
 							}
 							return array;
@@ -192,17 +478,13 @@ class DataParser{
 						case 1:{
 							Integer num  =type.arraySize.get(0);
 							int[]   array=new int[num];
-							for(int i=0;i<array.length;i++){
-								array[i]=data.read4BInt();
-							}
+							data.readInts(array, 0, array.length);
 							return array;
 						}
 						case 2:{
 							int[][] array=new int[type.arraySize.get(0)][type.arraySize.get(1)];
 							for(int[] ai : array){
-								for(int j=0, j1=ai.length;j<j1;j++){
-									ai[j]=data.read4BInt();
-								}
+								data.readInts(ai, 0, ai.length);
 							}
 							return array;
 						}
@@ -210,9 +492,7 @@ class DataParser{
 							int[][][] array=new int[type.arraySize.get(0)][type.arraySize.get(1)][type.arraySize.get(2)];
 							for(int[][] ai : array){
 								for(int[] aij : ai){
-									for(int k=0, k1=aij.length;k<k1;k++){
-										aij[k]=data.read4BInt();
-									}
+									data.readInts(aij, 0, aij.length);
 								}
 							}
 							return array;
@@ -267,17 +547,13 @@ class DataParser{
 						case 1:{
 							Integer num  =type.arraySize.get(0);
 							float[] array=new float[num];
-							for(int i=0;i<array.length;i++){
-								array[i]=data.read4BFloat();
-							}
+							data.readFloats(array, 0, array.length);
 							return array;
 						}
 						case 2:{
 							float[][] array=new float[type.arraySize.get(0)][type.arraySize.get(1)];
 							for(float[] ai : array){
-								for(int j=0, j1=ai.length;j<j1;j++){
-									ai[j]=data.read4BFloat();
-								}
+								data.readFloats(ai, 0, ai.length);
 							}
 							return array;
 						}
@@ -285,9 +561,7 @@ class DataParser{
 							float[][][] array=new float[type.arraySize.get(0)][type.arraySize.get(1)][type.arraySize.get(2)];
 							for(float[][] ai : array){
 								for(float[] aij : ai){
-									for(int k=0, k1=aij.length;k<k1;k++){
-										aij[k]=data.read4BFloat();
-									}
+									data.readFloats(aij, 0, aij.length);
 								}
 							}
 							return array;
@@ -311,14 +585,7 @@ class DataParser{
 				new TypeParserL(type("ListBase"), (type, data, blend)->{//allocate linked list
 					long first=data.readPtr();
 					long last =data.readPtr();
-					if(first==0) return Collections.emptyList();
-					try{
-						Object arr=blend.readBlock(first);
-						if(arr instanceof List) throw new RuntimeException();
-						return new StructLinkedList((Struct.Instance)arr);
-					}catch(BlendFileMissingBlock e){
-						return blend.strayPointer(first);
-					}
+					return resolveListBase(first, blend);
 				}),
 				new TypeParser(){
 					@Override
@@ -343,6 +610,78 @@ class DataParser{
 				});
 	}
 	
+	static Object resolvePointer(DnaType type, long ptr, BlendFile blend) throws IOException{
+		if(ptr==0) return null;
+		else try{
+			
+			if(type.pointerLevel>1){
+				FileBlockHeader block=blend.getBlock(ptr);
+				
+				int     count=block.bodySize/blend.header.ptrSize*block.count;
+				DnaType raw  =type.depointify();
+				
+				Object[] arr=new Object[count];
+				blend.reopen(block.bodyFilePos, in->{
+					for(int i=0;i<count;i++){
+						arr[i]=DataParser.parse(raw, in, blend);
+					}
+				});
+				return ArrayViewList.create(arr).obj2;
+			}
+			
+			FileBlockHeader block =blend.getBlock(ptr);
+			Struct          struct=block.getStruct();
+			
+			if(!type.is(struct.type.name)){
+				
+				if(!type.is("void")){
+					DnaType raw      =type.depointify();
+					int     knownSize=raw.size(blend);
+					
+					if(block.bodySize%knownSize!=0){
+//					LogUtil.println(type, struct.type.name);
+//					LogUtil.println(block, knownSize, block.bodySize%knownSize);
+//					LogUtil.println(raw);
+//					type=type.castTo(struct.type.name);
+						
+						return blend.readBlock(block);
+//					throw new RuntimeException();//wtf??
+					}
+					
+					Object[] arr=new Object[block.bodySize/knownSize];
+					blend.reopen(block.bodyFilePos, in->{
+						for(int i=0;i<arr.length;i++){
+							arr[i]=DataParser.parse(raw, in, blend);
+						}
+					});
+					
+					return ArrayViewList.create(arr).obj2;
+				}
+				
+				if(block.getStruct().id==0){
+					return new Struct.UnknownData(blend, block);
+				}
+			}
+			
+			return blend.readBlock(block);
+			
+		}catch(BlendFileMissingBlock e){
+			Object interior=blend.readInterior(ptr, type);
+			return interior!=null?interior:blend.strayPointer(ptr);
+		}
+	}
+	
+	static Object resolveListBase(long first, BlendFile blend){
+		if(first==0) return Collections.emptyList();
+		try{
+			Object arr=blend.readBlock(first);
+			if(arr instanceof List) throw new RuntimeException();
+			return new StructLinkedList((Struct.Instance)arr);
+		}catch(BlendFileMissingBlock e){
+			return blend.strayPointer(first);
+		}
+	}
+	
 	private static Struct.Instance parseStruct(DnaType type, BlendInputStream data, BlendFile blend) throws IOException{
 		Struct   struct   =blend.dna.getStruct(type);
 		long     dataStart=data.position();
@@ -351,6 +690,7 @@ class DataParser{
 	}
 	
 	static Object[] parseStructValues(Struct struct, BlendInputStream data, BlendFile blend) throws IOException{
+		if(!VALIDATE) return planOf(struct, blend).read(data, blend);
 		
 		Object[] values=new Object[struct.fields.size()];
 		
@@ -450,6 +790,18 @@ class DataParser{
 		return values;
 	}
 	
+	/**
+	 * Resolves the parser for a type once so reading a value does not have to search for it again.
+	 */
+	static FieldReader compile(DnaType type){
+		for(TypeParser parser : PRIMITIVES){
+			if(parser.canParse(type)){
+				return (data, blend)->parser.parse(type, data, blend);
+			}
+		}
+		return (data, blend)->parseStruct(type, data, blend);
+	}
+	
 	static Object parse(DnaType type, BlendInputStream data, BlendFile blend) throws IOException{
 		
 		for(TypeParser parser : PRIMITIVES){
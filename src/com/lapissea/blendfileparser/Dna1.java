@@ -2,11 +2,12 @@ package com.lapissea.blendfileparser;
 
 import com.lapissea.blendfileparser.exceptions.BlendFileIOException;
 import com.lapissea.blendfileparser.exceptions.BlendFileUnknownType;
+import com.lapissea.util.ArrayViewList;
 import com.lapissea.util.NotNull;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class Dna1{
 	
@@ -14,47 +15,107 @@ public class Dna1{
 		StringBuilder name=new StringBuilder(4);
 		int           c;
 		while(name.length()<4){
-			c=in.read();
+			c=in.read1BInt();
 			if(c!=0) name.append((char)c);
 		}
 		String id=name.toString();
 		if(!id.equals(data)) throw new BlendFileIOException("Invalid name! Need \""+data+"\", got \""+id+"\"");
 	}
 	
-	private final Struct[]            structs;
-	private final Map<String, Struct> structNameLookup;
+	private final String[] names;
+	private final String[] types;
+	private final short[]  lengths;
+	
+	/**
+	 * Raw STRC table: type, field count and then type and name index pairs for each struct.
+	 */
+	private final short[] strc;
+	private final int[]   structOffsets;
+	private final int[]   typeToStruct;
+	private final int[]   typeNameTable;
+	
+	private final AtomicReferenceArray<Struct> structs;
 	
 	Dna1(BlendInputStream in) throws IOException{
 		require(in, "SDNA");
 		
 		require(in, "NAME");
-		int      size =in.read4BInt();
-		String[] names=in.readNullTerminatedUTF8Array(size);
+		int size=in.read4BInt();
+		names=in.readNullTerminatedUTF8Array(size);
 		
 		require(in, "TYPE");
 		size=in.read4BInt();
-		String[] types=in.readNullTerminatedUTF8Array(size);
+		types=in.readNullTerminatedUTF8Array(size);
 		
 		require(in, "TLEN");
-		short[] lengths=in.readShortArray(size);
+		lengths=in.readShortArray(size);
 		
 		
 		require(in, "STRC");
 		size=in.read4BInt();
 		
-		structs=new Struct[size];
-		structNameLookup=new HashMap<>(structs.length);
-		for(int i=0;i<structs.length;i++){
-			Struct struct=Struct.read(in, i, names, types, lengths);
-			structs[i]=struct;
-			structNameLookup.put(struct.type.name, struct);
+		structOffsets=new int[size];
+		typeToStruct=new int[types.length];
+		Arrays.fill(typeToStruct, -1);
+		
+		short[] strc=new short[size*8];
+		int     pos =0;
+		for(int i=0;i<size;i++){
+			short typeId    =in.read2BInt();
+			short fieldCount=in.read2BInt();
+			
+			int len=2+fieldCount*2;
+			if(pos+len>strc.length) strc=Arrays.copyOf(strc, Math.max(strc.length<<1, pos+len));
+			
+			structOffsets[i]=pos;
+			strc[pos]=typeId;
+			strc[pos+1]=fieldCount;
+			in.readShorts(strc, pos+2, fieldCount*2);
+			pos+=len;
+			
+			typeToStruct[typeId]=i;
 		}
+		this.strc=Arrays.copyOf(strc, pos);
+		
+		typeNameTable=new int[Integer.highestOneBit(Math.max(types.length, 2)*2-1)<<1];
+		int mask=typeNameTable.length-1;
+		for(int t=0;t<types.length;t++){
+			if(typeToStruct[t]==-1) continue;
+			int i=types[t].hashCode()&mask;
+			while(typeNameTable[i]!=0) i=(i+1)&mask;
+			typeNameTable[i]=t+1;
+		}
+		
+		structs=new AtomicReferenceArray<>(size);
+	}
+	
+	private Struct createStruct(int sdnaIndex){
+		int   off       =structOffsets[sdnaIndex];
+		short typeId    =strc[off];
+		int   fieldCount=strc[off+1];
 		
+		Field[] variables=new Field[fieldCount];
+		for(int i=0;i<variables.length;i++){
+			int f=off+2+i*2;
+			variables[i]=new Field(types[strc[f]], names[strc[f+1]]);
+		}
 		
+		return new Struct(sdnaIndex, lengths[typeId], new DnaType(types[typeId], 0, false, null), ArrayViewList.create(variables).obj2);
 	}
 	
+	public int structCount(){
+		return structs.length();
+	}
+	
+	/**
+	 * Structs are only built when they are first asked for.
+	 */
 	public Struct getStruct(int sdnaIndex){
-		return structs[sdnaIndex];
+		Struct s=structs.get(sdnaIndex);
+		if(s!=null) return s;
+		
+		structs.compareAndSet(sdnaIndex, null, createStruct(sdnaIndex));
+		return structs.get(sdnaIndex);
 	}
 	
 	@NotNull
@@ -64,10 +125,13 @@ public class Dna1{
 	
 	@NotNull
 	public Struct getStruct(String name){
-		Struct s=structNameLookup.get(name);
-		if(s==null){
-			throw new BlendFileUnknownType("Unkown type: "+name);
+		int mask=typeNameTable.length-1;
+		int i   =name.hashCode()&mask;
+		int t;
+		while((t=typeNameTable[i])!=0){
+			if(types[t-1].equals(name)) return getStruct(typeToStruct[t-1]);
+			i=(i+1)&mask;
 		}
-		return s;
+		throw new BlendFileUnknownType("Unkown type: "+name);
 	}
 }
@@ -0,0 +1,106 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.UtilL;
+import com.lapissea.util.function.TriFunction;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Process wide catalog of parsed DNA. Files written by the same Blender build carry a byte identical DNA1 block so they
+ * can share one {@link Dna1} and its optimization table. Entries are weakly held and go away with the last file using them.
+ * A DNA is parsed once by the first file that needs it, files with the same DNA wait for it and others do not.
+ */
+final class DnaCatalog{
+	
+	static final class Schema{
+		final Dna1                                                                                          dna;
+		final Map<String, TriFunction<Struct, FileBlockHeader, BlendFile, TypeOptimizations.InstanceComposite<?>>> typeOptimizations;
+		
+		private Schema(Dna1 dna){
+			this.dna=dna;
+			typeOptimizations=Collections.unmodifiableMap(TypeOptimizations.get(dna));
+		}
+	}
+	
+	private static final class SchemaRef extends WeakReference<Schema>{
+		private final ByteBuffer key;
+		
+		private SchemaRef(ByteBuffer key, Schema referent){
+			super(referent, QUEUE);
+			this.key=key;
+		}
+	}
+	
+	private static final ReferenceQueue<Schema>                     QUEUE  =new ReferenceQueue<>();
+	private static final Map<ByteBuffer, SchemaRef>                 CATALOG=new HashMap<>();
+	private static final Map<ByteBuffer, CompletableFuture<Schema>> PARSING=new HashMap<>();
+	
+	private static ByteBuffer key(byte[] dnaBody, BlendFileHeader header){
+		try{
+			MessageDigest md=MessageDigest.getInstance("SHA-256");
+			md.update((byte)header.ptrSize);
+			md.update((byte)(header.order==ByteOrder.BIG_ENDIAN?1:0));
+			md.update(dnaBody);
+			return ByteBuffer.wrap(md.digest());
+		}catch(NoSuchAlgorithmException e){
+			throw UtilL.uncheckedThrow(e);
+		}
+	}
+	
+	static Schema get(byte[] dnaBody, BlendFileHeader header) throws IOException{
+		ByteBuffer key=key(dnaBody, header);
+		
+		CompletableFuture<Schema> pending;
+		synchronized(CATALOG){
+			SchemaRef stale;
+			while((stale=(SchemaRef)QUEUE.poll())!=null){
+				CATALOG.remove(stale.key, stale);
+			}
+			
+			SchemaRef ref   =CATALOG.get(key);
+			Schema    schema=ref==null?null:ref.get();
+			if(schema!=null) return schema;
+			
+			pending=PARSING.get(key);
+			if(pending==null) PARSING.put(key, new CompletableFuture<>());
+		}
+		
+		if(pending!=null){
+			try{
+				return pending.join();
+			}catch(CompletionException e){
+				throw UtilL.uncheckedThrow(e.getCause());
+			}
+		}
+		
+		Schema schema;
+		try(BlendInputStream in=new BlendInputStream(new ByteArrayInputStream(dnaBody), header)){
+			schema=new Schema(new Dna1(in));
+		}catch(Throwable e){
+			synchronized(CATALOG){
+				pending=PARSING.remove(key);
+			}
+			pending.completeExceptionally(e);
+			throw e;
+		}
+		
+		synchronized(CATALOG){
+			CATALOG.put(key, new SchemaRef(key, schema));
+			pending=PARSING.remove(key);
+		}
+		pending.complete(schema);
+		return schema;
+	}
+}
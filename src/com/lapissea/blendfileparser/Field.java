@@ -55,8 +55,16 @@ public class Field{
 	}
 	
 	
+	private DataParser.FieldReader reader;
+	
+	DataParser.FieldReader reader(){
+		DataParser.FieldReader r=reader;
+		if(r==null) reader=r=DataParser.compile(type);
+		return r;
+	}
+	
 	Object read(BlendInputStream data, BlendFile blend) throws IOException{
-		return DataParser.parse(type, data, blend);
+		return reader().read(data, blend);
 	}
 	
 	@Override
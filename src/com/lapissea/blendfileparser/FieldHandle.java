@@ -0,0 +1,146 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.NotNull;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+
+/**
+ * A field of a struct resolved once. Reads the field from instances of that struct without a name lookup and, where the
+ * instance is not yet decoded, straight from its raw body without boxing.
+ */
+public class FieldHandle{
+	
+	@NotNull
+	public final Struct struct;
+	@NotNull
+	public final Field  field;
+	public final int    index;
+	
+	final byte    kind;
+	final boolean floating;
+	final int     elements;
+	
+	FieldHandle(@NotNull Struct struct, int index){
+		this.struct=struct;
+		this.index=index;
+		field=struct.fields.get(index);
+		
+		DnaType type=field.type;
+		if(Struct.IGNORE_VALUES.contains(field.name)){
+			kind=DataParser.SCALAR_NONE;
+			elements=1;
+		}else if(type.isArray()&&!type.isPointer()&&!type.isFunc){
+			kind=DataParser.scalarKind(new DnaType(type.name, 0, false, null));
+			int count=1;
+			for(int dim : type.arraySize){
+				count*=dim;
+			}
+			elements=count;
+		}else{
+			kind=DataParser.scalarKind(type);
+			elements=1;
+		}
+		floating=kind==DataParser.SCALAR_FLOAT||kind==DataParser.SCALAR_DOUBLE;
+	}
+	
+	private void check(Struct.Instance instance){
+		if(instance.struct()!=struct) throw new IllegalArgumentException(instance.struct().type.name+" is not "+struct.type.name);
+	}
+	
+	private boolean direct(Struct.Instance instance){
+		return kind!=DataParser.SCALAR_NONE&&!field.type.isArray()&&instance.isByteBacked();
+	}
+	
+	public Object get(Struct.Instance instance){
+		check(instance);
+		return instance.get(index, field.name);
+	}
+	
+	public long getLong(Struct.Instance instance){
+		check(instance);
+		if(direct(instance)) return floating?(long)instance.scalarDouble(index):instance.scalarLong(index);
+		return ((Number)instance.get(index, field.name)).longValue();
+	}
+	
+	public int getInt(Struct.Instance instance){
+		check(instance);
+		if(direct(instance)) return floating?(int)instance.scalarDouble(index):(int)instance.scalarLong(index);
+		return ((Number)instance.get(index, field.name)).intValue();
+	}
+	
+	public short getShort(Struct.Instance instance){
+		check(instance);
+		if(direct(instance)) return floating?(short)instance.scalarDouble(index):(short)instance.scalarLong(index);
+		return ((Number)instance.get(index, field.name)).shortValue();
+	}
+	
+	public byte getByte(Struct.Instance instance){
+		check(instance);
+		if(direct(instance)) return floating?(byte)instance.scalarDouble(index):(byte)instance.scalarLong(index);
+		return ((Number)instance.get(index, field.name)).byteValue();
+	}
+	
+	public float getFloat(Struct.Instance instance){
+		check(instance);
+		if(direct(instance)) return (float)instance.scalarDouble(index);
+		return ((Number)instance.get(index, field.name)).floatValue();
+	}
+	
+	/**
+	 * Copies a float array field, multidimensional arrays are copied flattened in row order.
+	 *
+	 * @return dest
+	 */
+	public float[] getFloatArray(Struct.Instance instance, float[] dest){
+		check(instance);
+		if(kind!=DataParser.SCALAR_FLOAT||!field.type.isArray()) throw new IllegalStateException(field+" is not a float array");
+		if(dest.length<elements) throw new IllegalArgumentException("Destination of "+dest.length+" can not fit "+elements+" values");
+		
+		if(instance.isByteBacked()){
+			ByteBuffer bb =instance.bytes();
+			int        off=struct.fieldOffset(index, instance.blend);
+			for(int i=0;i<elements;i++){
+				dest[i]=bb.getFloat(off+i*4);
+			}
+		}else copy(instance.get(index, field.name), dest, 0);
+		return dest;
+	}
+	
+	/**
+	 * Copies an int array field, multidimensional arrays are copied flattened in row order.
+	 *
+	 * @return dest
+	 */
+	public int[] getIntArray(Struct.Instance instance, int[] dest){
+		check(instance);
+		if(kind!=DataParser.SCALAR_INT||!field.type.isArray()) throw new IllegalStateException(field+" is not an int array");
+		if(dest.length<elements) throw new IllegalArgumentException("Destination of "+dest.length+" can not fit "+elements+" values");
+		
+		if(instance.isByteBacked()){
+			ByteBuffer bb =instance.bytes();
+			int        off=struct.fieldOffset(index, instance.blend);
+			for(int i=0;i<elements;i++){
+				dest[i]=bb.getInt(off+i*4);
+			}
+		}else copy(instance.get(index, field.name), dest, 0);
+		return dest;
+	}
+	
+	private static int copy(Object src, Object dest, int pos){
+		if(src instanceof Object[]){
+			for(Object o : (Object[])src){
+				pos=copy(o, dest, pos);
+			}
+			return pos;
+		}
+		int len=Array.getLength(src);
+		System.arraycopy(src, 0, dest, pos, len);
+		return pos+len;
+	}
+	
+	@Override
+	public String toString(){
+		return struct.type.name+"."+field.name;
+	}
+}
@@ -1,7 +1,7 @@
 package com.lapissea.blendfileparser;
 
 import java.io.IOException;
-import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Consumer;
 
 import static com.lapissea.blendfileparser.BlockCode.*;
@@ -10,7 +10,12 @@ public class FileBlockHeader{
 	
 	public static final FileBlockHeader[] NO_BLOCKS=new FileBlockHeader[0];
 	
-	WeakReference<Object> bodyCache;
+	private static final AtomicReferenceFieldUpdater<FileBlockHeader, Object> BODY_CACHE=AtomicReferenceFieldUpdater.newUpdater(FileBlockHeader.class, Object.class, "bodyCache");
+	
+	/**
+	 * Decoded body of the block, managed by {@link BlendFile#readBlock(FileBlockHeader)}.
+	 */
+	volatile Object bodyCache;
 	
 	public final  BlockCode code;
 	public final  int       bodySize;
@@ -19,24 +24,40 @@ public class FileBlockHeader{
 	public final  int       count;
 	public final  long      bodyFilePos;
 	
+	private final Struct struct;
+	
+	/**
+	 * Reads a block header and skips its body, the DNA block is parsed and given to dnaSetter. Headers read this way
+	 * have no struct.
+	 *
+	 * @deprecated blocks are read in to a {@link BlockTable} by {@link BlendFile}, this is kept for existing callers
+	 */
+	@Deprecated
 	public FileBlockHeader(BlendInputStream in, Consumer<Dna1> dnaSetter) throws IOException{
-		
 		code=BlockCode.getById(in.read4ByteString());
 		bodySize=in.read4BInt();
 		oldPtr=in.readPtr();
 		sdnaIndex=in.read4BInt();
 		count=in.read4BInt();
 		bodyFilePos=in.position();
+		struct=null;
 		
 		if(code==DNA1) dnaSetter.accept(new Dna1(in));
 		else in.skipNBytes(bodySize);
-		
 	}
 	
-	private Struct struct;
+	FileBlockHeader(BlockTable table, int index, Struct struct){
+		code=table.code(index);
+		bodySize=table.bodySize(index);
+		oldPtr=table.oldPtr(index);
+		sdnaIndex=table.sdnaIndex(index);
+		count=table.count(index);
+		bodyFilePos=table.bodyFilePos(index);
+		this.struct=struct;
+	}
 	
-	void init(Dna1 dna){
-		struct=dna.getStruct(sdnaIndex);
+	boolean casBodyCache(Object expect, Object update){
+		return BODY_CACHE.compareAndSet(this, expect, update);
 	}
 	
 	public Struct getStruct(){
@@ -0,0 +1,358 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.blendfileparser.exceptions.BlendFileIOException;
+import com.lapissea.util.LogUtil;
+import com.lapissea.util.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Random access over a gzip compressed blend file.<br/>
+ * java.util.zip can not resume inflation at an arbitrary bit offset so instead of zran style dictionary checkpoints
+ * the file is inflated once and every span of output is deflated again as an independent chunk in to an index file.
+ * Any position can then be served by inflating a single chunk. The index file is kept and reused as long as the path,
+ * length and modification time of the source file match, so only the first open pays for the full inflate.
+ */
+class GzipIndexSource extends ChunkedSource{
+	
+	private static final int MAGIC       =0x425A4932;//BZI2
+	private static final int CACHE_CHUNKS=8;
+	
+	/**
+	 * Thrown when the index can not be written, as opposed to the source not being readable.
+	 */
+	private static final class IndexWriteException extends IOException{
+		IndexWriteException(IOException cause){
+			super(cause);
+		}
+	}
+	
+	/**
+	 * @return where the index of a source is kept when no sidecar is given, in the cache directory if there is one,
+	 * next to the source otherwise
+	 */
+	static File defaultIndexFile(File source, @Nullable File cacheDir) throws IOException{
+		if(cacheDir==null) return new File(source.getPath()+".bzi");
+		String path=source.getCanonicalPath();
+		return new File(cacheDir, Integer.toHexString(path.hashCode())+"-"+Long.toHexString(path.length())+".bzi");
+	}
+	
+	/**
+	 * Opens the index of a source, builds it first if there is none that matches the source.
+	 *
+	 * @return the source or null if the index could not be written
+	 */
+	@Nullable
+	static GzipIndexSource open(File source, File indexFile, int span) throws IOException{
+		byte[] path=source.getCanonicalPath().getBytes(StandardCharsets.UTF_8);
+		
+		GzipIndexSource existing=tryOpen(source, indexFile, path);
+		if(existing!=null) return existing;
+		
+		try{
+			build(source, indexFile, path, span);
+		}catch(IndexWriteException e){
+			LogUtil.printlnEr("Could not store gzip index", indexFile, e.getCause());
+			return null;
+		}
+		
+		GzipIndexSource built=tryOpen(source, indexFile, path);
+		if(built==null) throw new BlendFileIOException("Failed to build index for "+source);
+		return built;
+	}
+	
+	@Nullable
+	private static GzipIndexSource tryOpen(File source, File indexFile, byte[] path) throws IOException{
+		if(!indexFile.isFile()) return null;
+		
+		FileChannel index=FileChannel.open(indexFile.toPath(), READ);
+		try{
+			ByteBuffer header=readHeader(index, source, path);
+			if(header!=null) return new GzipIndexSource(indexFile, index, header);
+		}catch(BlendFileIOException e){
+			//truncated or damaged, it is built again
+		}catch(Throwable e){
+			index.close();
+			throw e;
+		}
+		index.close();
+		return null;
+	}
+	
+	private static int headerSize(byte[] path){
+		return 4+8+8+4+path.length+4+4+8+8;
+	}
+	
+	/**
+	 * @return the header positioned after the key or null if the index does not belong to the source
+	 */
+	@Nullable
+	private static ByteBuffer readHeader(FileChannel index, File source, byte[] path) throws IOException{
+		int size=headerSize(path);
+		if(index.size()<size) return null;
+		ByteBuffer header=readFully(index, 0, size);
+		if(header.getInt()!=MAGIC||
+		   header.getLong()!=source.length()||
+		   header.getLong()!=source.lastModified()||
+		   header.getInt()!=path.length) return null;
+		
+		byte[] actual=new byte[path.length];
+		header.get(actual);
+		return Arrays.equals(path, actual)?header:null;
+	}
+	
+	/**
+	 * Writes the index in to a temporary file next to its destination and moves it in place once it is complete, so
+	 * a reader never sees a partial index.
+	 */
+	private static void build(File source, File indexFile, byte[] path, int span) throws IOException{
+		File tmp;
+		try{
+			tmp=File.createTempFile("blend", ".bzi.tmp", indexFile.getAbsoluteFile().getParentFile());
+		}catch(IOException e){
+			throw new IndexWriteException(e);
+		}
+		try{
+			try(FileChannel index=openForWrite(tmp)){
+				InputStream raw=new FileInputStream(source);
+				InputStream in;
+				try{
+					in=new GZIPInputStream(raw, 1<<16);
+				}catch(Throwable e){
+					raw.close();
+					throw e;
+				}
+				build(index, source, path, in, span);
+			}
+			
+			try{
+				Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}catch(IOException e){
+				throw new IndexWriteException(e);
+			}
+			tmp=null;
+		}finally{
+			//noinspection ResultOfMethodCallIgnored
+			if(tmp!=null) tmp.delete();
+		}
+	}
+	
+	private static FileChannel openForWrite(File file) throws IOException{
+		try{
+			return FileChannel.open(file.toPath(), WRITE);
+		}catch(IOException e){
+			throw new IndexWriteException(e);
+		}
+	}
+	
+	private static void build(FileChannel index, File source, byte[] path, InputStream in, int span) throws IOException{
+		byte[]   raw       =new byte[span];
+		byte[]   compressed=new byte[span+(span>>>3)+64];
+		Deflater deflater  =new Deflater(Deflater.BEST_SPEED, true);
+		
+		long[] offsets   =new long[16];
+		int    chunkCount=0;
+		long   size      =0;
+		long   writePos  =headerSize(path);
+		
+		try{
+			while(true){
+				int filled=0;
+				while(filled<span){
+					int read=in.read(raw, filled, span-filled);
+					if(read==-1) break;
+					filled+=read;
+				}
+				if(filled==0) break;
+				
+				if(offsets.length==chunkCount+1){
+					long[] old=offsets;
+					offsets=new long[old.length<<1];
+					System.arraycopy(old, 0, offsets, 0, old.length);
+				}
+				offsets[chunkCount++]=writePos;
+				size+=filled;
+				
+				deflater.reset();
+				deflater.setInput(raw, 0, filled);
+				deflater.finish();
+				while(!deflater.finished()){
+					int len=deflater.deflate(compressed);
+					writePos+=writeFully(index, writePos, ByteBuffer.wrap(compressed, 0, len));
+				}
+				
+				if(filled<span) break;
+			}
+		}finally{
+			deflater.end();
+			in.close();
+		}
+		offsets[chunkCount]=writePos;
+		
+		ByteBuffer table=ByteBuffer.allocate((chunkCount+1)*8);
+		for(int i=0;i<=chunkCount;i++){
+			table.putLong(offsets[i]);
+		}
+		table.flip();
+		long tablePos=writePos;
+		writeFully(index, tablePos, table);
+		
+		ByteBuffer header=ByteBuffer.allocate(headerSize(path));
+		header.putInt(MAGIC)
+		      .putLong(source.length())
+		      .putLong(source.lastModified())
+		      .putInt(path.length)
+		      .put(path)
+		      .putInt(span)
+		      .putInt(chunkCount)
+		      .putLong(size)
+		      .putLong(tablePos);
+		header.flip();
+		writeFully(index, 0, header);
+		try{
+			index.force(false);
+		}catch(IOException e){
+			throw new IndexWriteException(e);
+		}
+	}
+	
+	private static int writeFully(FileChannel channel, long pos, ByteBuffer data) throws IOException{
+		int len=data.remaining();
+		try{
+			while(data.hasRemaining()){
+				pos+=channel.write(data, pos);
+			}
+		}catch(IOException e){
+			throw new IndexWriteException(e);
+		}
+		return len;
+	}
+	
+	private static ByteBuffer readFully(FileChannel channel, long pos, int len) throws IOException{
+		ByteBuffer bb=ByteBuffer.allocate(len);
+		while(bb.hasRemaining()){
+			int read=channel.read(bb, pos+bb.position());
+			if(read==-1) throw new BlendFileIOException("Unexpected index end");
+		}
+		bb.flip();
+		return bb;
+	}
+	
+	private final    File        indexFile;
+	private volatile FileChannel index;
+	private volatile boolean     closed;
+	private final    int         span;
+	private final    long        size;
+	private final    long[]      chunkOffsets;
+	
+	private GzipIndexSource(File indexFile, FileChannel index, ByteBuffer header) throws IOException{
+		super(CACHE_CHUNKS);
+		this.indexFile=indexFile;
+		this.index=index;
+		
+		span=header.getInt();
+		int chunkCount=header.getInt();
+		size=header.getLong();
+		long tablePos=header.getLong();
+		
+		ByteBuffer table=readFully(index, tablePos, (chunkCount+1)*8);
+		chunkOffsets=new long[chunkCount+1];
+		for(int i=0;i<chunkOffsets.length;i++){
+			chunkOffsets[i]=table.getLong();
+		}
+	}
+	
+	/**
+	 * Positional read of the index that survives the channel being closed by an interrupt of any reading thread. The
+	 * channel is reopened and the interrupt of the current thread is restored once the read is done.
+	 */
+	private ByteBuffer readIndex(long pos, int len) throws IOException{
+		boolean interrupted=false;
+		try{
+			while(true){
+				FileChannel c=index;
+				try{
+					return readFully(c, pos, len);
+				}catch(ClosedChannelException e){
+					if(closed) throw new IOException("Source closed", e);
+					if(e instanceof ClosedByInterruptException) interrupted|=Thread.interrupted();
+					reopenIndex(c);
+				}
+			}
+		}finally{
+			if(interrupted) Thread.currentThread().interrupt();
+		}
+	}
+	
+	private synchronized void reopenIndex(FileChannel closedChannel) throws IOException{
+		if(closed||index!=closedChannel) return;
+		index=FileChannel.open(indexFile.toPath(), READ);
+	}
+	
+	@Override
+	protected int chunkIndex(long pos){
+		return (int)(pos/span);
+	}
+	
+	@Override
+	protected long chunkStart(int chunkIndex){
+		return (long)chunkIndex*span;
+	}
+	
+	@Override
+	protected byte[] readChunk(int chunkIndex) throws IOException{
+		long   start     =chunkOffsets[chunkIndex];
+		byte[] compressed=readIndex(start, (int)(chunkOffsets[chunkIndex+1]-start)).array();
+		byte[] chunk     =new byte[(int)Math.min(span, size-(long)chunkIndex*span)];
+		
+		Inflater inflater=new Inflater(true);
+		try{
+			inflater.setInput(compressed);
+			int filled=0;
+			while(filled<chunk.length){
+				int read=inflater.inflate(chunk, filled, chunk.length-filled);
+				if(read==0&&(inflater.finished()||inflater.needsInput())) throw new BlendFileIOException("Corrupted index chunk "+chunkIndex+" in "+indexFile);
+				filled+=read;
+			}
+		}catch(DataFormatException e){
+			throw new BlendFileIOException("Corrupted index chunk "+chunkIndex+" in "+indexFile, e);
+		}finally{
+			inflater.end();
+		}
+		return chunk;
+	}
+	
+	@Override
+	protected boolean isOpen(){
+		return !closed;
+	}
+	
+	@Override
+	public long size(){
+		return size;
+	}
+	
+	@Override
+	public synchronized void close() throws IOException{
+		closed=true;
+		super.close();
+		index.close();
+	}
+}
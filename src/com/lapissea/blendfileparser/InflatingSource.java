@@ -0,0 +1,284 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.LogUtil;
+import com.lapissea.util.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Inflates a compressed stream sequentially in to fixed size chunks that are never copied again.
+ * Depending on the {@link CompressedMode} the chunks live on the heap, in direct buffers or in a memory mapped temporary file.
+ * Inflating runs on a worker thread at most {@link #READ_AHEAD} bytes ahead of the furthest position a reader asked for,
+ * readers only wait when they reach past what is already inflated.
+ */
+class InflatingSource implements BlendSource{
+	
+	private static final int CHUNK_SHIFT=22;
+	private static final int CHUNK_SIZE =1<<CHUNK_SHIFT;
+	private static final int CHUNK_MASK =CHUNK_SIZE-1;
+	private static final int READ_AHEAD =CHUNK_SIZE*2;
+	
+	private class View extends InputStream{
+		
+		private long       pos;
+		private long       known;
+		private int        chunkIndex=-1;
+		private ByteBuffer chunk;
+		
+		private View(long pos){
+			this.pos=pos;
+		}
+		
+		private boolean available(long end) throws IOException{
+			if(end<=known) return true;
+			known=ensure(end);
+			return pos<known;
+		}
+		
+		private ByteBuffer chunk() throws IOException{
+			int ci=(int)(pos>>>CHUNK_SHIFT);
+			if(ci!=chunkIndex){
+				chunk=getChunk(ci).duplicate();
+				chunkIndex=ci;
+			}
+			chunk.position((int)(pos&CHUNK_MASK));
+			return chunk;
+		}
+		
+		@Override
+		public int read() throws IOException{
+			if(!available(pos+1)) return -1;
+			byte b=chunk().get();
+			pos++;
+			return b&0xFF;
+		}
+		
+		@Override
+		public int read(@NotNull byte[] b, int off, int len) throws IOException{
+			if(len==0) return 0;
+			if(!available(pos+len)) return -1;
+			
+			int toRead=(int)Math.min(len, known-pos);
+			int read  =0;
+			while(read<toRead){
+				ByteBuffer c  =chunk();
+				int        now=Math.min(toRead-read, c.remaining());
+				c.get(b, off+read, now);
+				read+=now;
+				pos+=now;
+			}
+			return read;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException{
+			if(n<=0) return 0;
+			available(pos+n);
+			long skipped=Math.min(n, known-pos);
+			pos+=skipped;
+			return skipped;
+		}
+	}
+	
+	private final CompressedMode mode;
+	
+	private final InputStream filler;
+	private final Thread      worker;
+	private final Object      lock=new Object();
+	
+	private volatile ByteBuffer[] chunks=new ByteBuffer[16];
+	private volatile long         inflated;
+	private volatile long         requested;
+	private volatile boolean      finished;
+	private volatile boolean      closed;
+	private volatile Throwable    failure;
+	private volatile int          waiters;
+	
+	private File        tempFile;
+	private FileChannel tempChannel;
+	
+	InflatingSource(InputStream inflater, CompressedMode mode) throws IOException{
+		this.filler=inflater;
+		this.mode=mode;
+		
+		if(mode==CompressedMode.TEMP_FILE){
+			tempFile=File.createTempFile("blend", ".inflated");
+			tempFile.deleteOnExit();
+			tempChannel=FileChannel.open(tempFile.toPath(), READ, WRITE);
+		}
+		
+		worker=new Thread(this::fill, "Blend inflater");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
+	private ByteBuffer allocateChunk(int index) throws IOException{
+		switch(mode){
+		case DIRECT:
+			return ByteBuffer.allocateDirect(CHUNK_SIZE);
+		case TEMP_FILE:
+			return tempChannel.map(FileChannel.MapMode.READ_WRITE, (long)index<<CHUNK_SHIFT, CHUNK_SIZE);
+		default:
+			return ByteBuffer.allocate(CHUNK_SIZE);
+		}
+	}
+	
+	private ByteBuffer getChunk(int index) throws IOException{
+		ByteBuffer[] c=chunks;
+		if(c==null) throw new IOException("Source closed");
+		return c[index];
+	}
+	
+	/**
+	 * Runs on the worker thread. Inflates the stream ahead of the readers and publishes progress through {@link #inflated}.
+	 * Waits while it is a full read ahead past what was {@link #requested}.
+	 */
+	private void fill(){
+		byte[] transfer=new byte[1<<16];
+		long   pos     =0;
+		try{
+			while(!closed){
+				if(pos-requested>=READ_AHEAD){
+					synchronized(lock){
+						while(!closed&&pos-requested>=READ_AHEAD){
+							lock.wait();
+						}
+					}
+					continue;
+				}
+				
+				int          ci=(int)(pos>>>CHUNK_SHIFT);
+				ByteBuffer[] c =chunks;
+				if(ci==c.length) c=Arrays.copyOf(c, c.length<<1);
+				if(c[ci]==null){
+					c[ci]=allocateChunk(ci);
+					chunks=c;
+				}
+				
+				ByteBuffer chunk=c[ci];
+				int        off  =(int)(pos&CHUNK_MASK);
+				int        read =filler.read(transfer, 0, Math.min(transfer.length, CHUNK_SIZE-off));
+				if(read<=0) break;
+				
+				chunk.position(off);
+				chunk.put(transfer, 0, read);
+				pos+=read;
+				
+				inflated=pos;
+				if(waiters>0) wake();
+			}
+		}catch(Throwable e){
+			failure=e;
+		}finally{
+			try{
+				filler.close();
+			}catch(IOException e){
+				if(failure==null) failure=e;
+			}
+			finished=true;
+			wake();
+		}
+	}
+	
+	private void wake(){
+		synchronized(lock){
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Waits until at least end bytes are available or the stream ends.
+	 *
+	 * @return number of inflated bytes
+	 */
+	private long ensure(long end) throws IOException{
+		long available=inflated;
+		if(available>=end) return available;
+		
+		synchronized(lock){
+			if(end>requested){
+				requested=end;
+				lock.notifyAll();
+			}
+			waiters++;
+			try{
+				while(true){
+					if(closed) throw new IOException("Source closed");
+					
+					boolean done=finished;
+					available=inflated;
+					
+					Throwable f=failure;
+					if(f!=null) throw new IOException("Failed to inflate", f);
+					
+					if(available>=end||done) return available;
+					lock.wait();
+				}
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}finally{
+				waiters--;
+			}
+		}
+	}
+	
+	@Override
+	public InputStream openAt(long pos) throws IOException{
+		if(closed) throw new IOException("Source closed");
+		return new View(pos);
+	}
+	
+	/**
+	 * Total size once everything is inflated, -1 before that. Does not wait for the inflater, {@link #preload()} first
+	 * to get the final size.
+	 */
+	@Override
+	public long size(){
+		return finished?inflated:-1;
+	}
+	
+	/**
+	 * A temporary file is used to keep the inflated bytes out of memory so only the heap and direct modes count.
+	 */
+	@Override
+	public boolean isInMemory(){
+		return mode!=CompressedMode.TEMP_FILE;
+	}
+	
+	@Override
+	public void preload() throws IOException{
+		ensure(Long.MAX_VALUE);
+	}
+	
+	@Override
+	public void close() throws IOException{
+		if(closed) return;
+		closed=true;
+		wake();
+		
+		try{
+			worker.join();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		//views may still hold mapped chunks, the file can only be deleted once nothing maps it
+		chunks=null;
+		
+		if(tempChannel!=null){
+			tempChannel.close();
+			tempChannel=null;
+			if(!tempFile.delete()){
+				LogUtil.printlnEr("Could not delete temporary file", tempFile, "it will be deleted on exit");
+			}
+		}
+	}
+}
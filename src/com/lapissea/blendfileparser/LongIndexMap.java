@@ -0,0 +1,79 @@
+package com.lapissea.blendfileparser;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from a long key to a non negative int, without boxing.
+ */
+final class LongIndexMap{
+	
+	private long[] keys;
+	private int[]  values;
+	private int    size;
+	private int    mask;
+	
+	LongIndexMap(int expectedSize){
+		int cap=Integer.highestOneBit(Math.max(4, expectedSize)*2-1)<<1;
+		keys=new long[cap];
+		values=new int[cap];
+		Arrays.fill(values, -1);
+		mask=cap-1;
+	}
+	
+	private static int hash(long key){
+		long h=key*0x9E3779B97F4A7C15L;
+		return (int)(h^(h>>>32));
+	}
+	
+	/**
+	 * Maps the key to value, replacing any previous mapping.
+	 */
+	void put(long key, int value){
+		if(value<0) throw new IllegalArgumentException("value must be non negative: "+value);
+		if((size+1)*2>keys.length) rehash(keys.length<<1);
+		
+		int i=hash(key)&mask;
+		while(values[i]!=-1){
+			if(keys[i]==key){
+				values[i]=value;
+				return;
+			}
+			i=(i+1)&mask;
+		}
+		keys[i]=key;
+		values[i]=value;
+		size++;
+	}
+	
+	/**
+	 * @return mapped value or -1 if there is none
+	 */
+	int get(long key){
+		int i=hash(key)&mask;
+		int v;
+		while((v=values[i])!=-1){
+			if(keys[i]==key) return v;
+			i=(i+1)&mask;
+		}
+		return -1;
+	}
+	
+	int size(){
+		return size;
+	}
+	
+	private void rehash(int newCapacity){
+		long[] oldKeys  =keys;
+		int[]  oldValues=values;
+		
+		keys=new long[newCapacity];
+		values=new int[newCapacity];
+		Arrays.fill(values, -1);
+		mask=newCapacity-1;
+		size=0;
+		
+		for(int i=0;i<oldKeys.length;i++){
+			if(oldValues[i]!=-1) put(oldKeys[i], oldValues[i]);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.file.StandardOpenOption.*;
+
+class MappedSource implements BlendSource{
+	
+	private static final int  CHUNK_SHIFT=30;
+	private static final long CHUNK_SIZE =1L<<CHUNK_SHIFT;
+	private static final long CHUNK_MASK =CHUNK_SIZE-1;
+	
+	private class View extends InputStream{
+		
+		private long       pos;
+		private int        chunkIndex=-1;
+		private ByteBuffer chunk;
+		
+		private View(long pos){
+			this.pos=pos;
+		}
+		
+		private ByteBuffer chunk() throws IOException{
+			int ci=(int)(pos>>>CHUNK_SHIFT);
+			if(ci!=chunkIndex){
+				chunk=chunks()[ci].duplicate();
+				chunkIndex=ci;
+			}
+			chunk.position((int)(pos&CHUNK_MASK));
+			return chunk;
+		}
+		
+		@Override
+		public int read() throws IOException{
+			if(pos>=size) return -1;
+			byte b=chunks()[(int)(pos>>>CHUNK_SHIFT)].get((int)(pos&CHUNK_MASK));
+			pos++;
+			return b&0xFF;
+		}
+		
+		@Override
+		public int read(@NotNull byte[] b, int off, int len) throws IOException{
+			if(len==0) return 0;
+			if(pos>=size) return -1;
+			
+			int read=0;
+			while(read<len&&pos<size){
+				ByteBuffer c  =chunk();
+				int        now=Math.min(len-read, c.remaining());
+				c.get(b, off+read, now);
+				read+=now;
+				pos+=now;
+			}
+			return read;
+		}
+		
+		@Override
+		public long skip(long n){
+			if(n<=0) return 0;
+			long skipped=Math.min(n, size-pos);
+			pos+=skipped;
+			return skipped;
+		}
+		
+		@Override
+		public int available(){
+			return (int)Math.min(Integer.MAX_VALUE, size-pos);
+		}
+	}
+	
+	private final    long               size;
+	private volatile MappedByteBuffer[] chunks;
+	
+	MappedSource(File file) throws IOException{
+		try(FileChannel channel=FileChannel.open(file.toPath(), READ)){
+			size=channel.size();
+			chunks=new MappedByteBuffer[(int)((size+CHUNK_SIZE-1)>>>CHUNK_SHIFT)];
+			for(int i=0;i<chunks.length;i++){
+				long start=(long)i<<CHUNK_SHIFT;
+				chunks[i]=channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size-start));
+			}
+		}
+	}
+	
+	private MappedByteBuffer[] chunks() throws IOException{
+		MappedByteBuffer[] c=chunks;
+		if(c==null) throw new IOException("Source closed");
+		return c;
+	}
+	
+	@Override
+	public InputStream openAt(long pos) throws IOException{
+		chunks();
+		return new View(pos);
+	}
+	
+	@Override
+	public boolean isInMemory(){
+		return true;
+	}
+	
+	@Override
+	public long size(){
+		return size;
+	}
+	
+	@Override
+	public void close(){
+		//mappings are released when the buffers are collected
+		chunks=null;
+	}
+}
@@ -0,0 +1,100 @@
+package com.lapissea.blendfileparser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Second cache tier that keeps the raw bytes of block bodies in direct memory, least recently used first out. Decoding
+ * a block whose body is here copies it out of memory instead of going back to the source, which matters most for
+ * compressed files. Sources that are already in memory, like a mapped file, are read directly and never cached. Its
+ * budget is independent of {@link BlockCache} and it can be shared between files.
+ * <p>
+ * Evicted buffers are freed once the garbage collector finds them unreachable. The cache does not keep a file
+ * reachable, the bodies of a file that is dropped without being closed leave the cache with it.
+ */
+public class RawBlockCache{
+	
+	private final WeightedLru<ByteBuffer> lru;
+	
+	/**
+	 * @param maxBytes budget of raw block bytes kept in direct memory
+	 */
+	public RawBlockCache(long maxBytes){
+		lru=new WeightedLru<>(maxBytes);
+	}
+	
+	/**
+	 * @return true if a body of this size can be cached at all
+	 */
+	boolean fits(int bodySize){
+		return bodySize>0&&bodySize<=lru.maxWeight();
+	}
+	
+	/**
+	 * @return the part of the cache that holds the bodies of one file, only the file should hold on to it
+	 */
+	WeightedLru.Segment<ByteBuffer> newSegment(){
+		return lru.newSegment();
+	}
+	
+	/**
+	 * @return a read only view of the body positioned at its start, or null if it is not cached
+	 */
+	ByteBuffer get(WeightedLru.Segment<ByteBuffer> segment, long bodyFilePos){
+		ByteBuffer body=lru.get(segment, bodyFilePos);
+		return body==null?null:body.duplicate();
+	}
+	
+	/**
+	 * Copies a body in to direct memory.
+	 *
+	 * @return a read only view of the cached body positioned at its start
+	 */
+	ByteBuffer put(WeightedLru.Segment<ByteBuffer> segment, long bodyFilePos, byte[] body){
+		ByteBuffer buff=ByteBuffer.allocateDirect(body.length);
+		buff.put(body).flip();
+		buff=buff.asReadOnlyBuffer();
+		
+		lru.put(segment, bodyFilePos, buff, buff.capacity());
+		return buff.duplicate();
+	}
+	
+	/**
+	 * Drops every body read from a file.
+	 */
+	void invalidate(WeightedLru.Segment<ByteBuffer> segment){
+		lru.invalidate(segment);
+	}
+	
+	public void clear(){
+		lru.clear();
+	}
+	
+	public long maxBytes(){
+		return lru.maxWeight();
+	}
+	
+	public long bytes(){
+		return lru.weight();
+	}
+	
+	public int size(){
+		return lru.size();
+	}
+	
+	public long hits(){
+		return lru.hits();
+	}
+	
+	public long misses(){
+		return lru.misses();
+	}
+	
+	public long evictions(){
+		return lru.evictions();
+	}
+	
+	@Override
+	public String toString(){
+		return "RawBlockCache{"+size()+" blocks, "+bytes()+"/"+maxBytes()+" bytes, hits="+hits()+", misses="+misses()+", evictions="+evictions()+"}";
+	}
+}
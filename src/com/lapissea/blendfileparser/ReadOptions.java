@@ -0,0 +1,157 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.NotNull;
+import com.lapissea.util.Nullable;
+
+import java.io.File;
+import java.util.Objects;
+
+public class ReadOptions{
+	
+	private SourceMode     sourceMode    =SourceMode.STREAM;
+	private CompressedMode compressedMode=CompressedMode.HEAP;
+	private File           gzipIndexFile;
+	private int            gzipIndexSpan =1<<20;
+	private boolean        preload;
+	private File           blockIndexDir;
+	private boolean        flatDecoders;
+	private int            readerPoolSize=4;
+	private BlockCache     blockCache;
+	private RawBlockCache  rawBlockCache;
+	
+	@NotNull
+	public SourceMode sourceMode(){
+		return sourceMode;
+	}
+	
+	public ReadOptions sourceMode(@NotNull SourceMode sourceMode){
+		this.sourceMode=Objects.requireNonNull(sourceMode);
+		return this;
+	}
+	
+	@NotNull
+	public CompressedMode compressedMode(){
+		return compressedMode;
+	}
+	
+	public ReadOptions compressedMode(@NotNull CompressedMode compressedMode){
+		this.compressedMode=Objects.requireNonNull(compressedMode);
+		return this;
+	}
+	
+	@Nullable
+	public File gzipIndexFile(){
+		return gzipIndexFile;
+	}
+	
+	/**
+	 * Index file for {@link CompressedMode#INDEXED}. It is reused while it matches the blend file and rebuilt otherwise.
+	 * If null, the index is kept in {@link #blockIndexDir(File)} or next to the blend file when there is no such
+	 * directory. If the index can not be written the file is inflated as with {@link CompressedMode#HEAP}.
+	 */
+	public ReadOptions gzipIndexFile(@Nullable File gzipIndexFile){
+		this.gzipIndexFile=gzipIndexFile;
+		return this;
+	}
+	
+	public int gzipIndexSpan(){
+		return gzipIndexSpan;
+	}
+	
+	public ReadOptions gzipIndexSpan(int gzipIndexSpan){
+		if(gzipIndexSpan<=0) throw new IllegalArgumentException("Span must be positive: "+gzipIndexSpan);
+		this.gzipIndexSpan=gzipIndexSpan;
+		return this;
+	}
+	
+	public boolean preload(){
+		return preload;
+	}
+	
+	/**
+	 * Prepare the whole file while opening it, see {@link BlendFile#preload()}.
+	 */
+	public ReadOptions preload(boolean preload){
+		this.preload=preload;
+		return this;
+	}
+	
+	@Nullable
+	public File blockIndexDir(){
+		return blockIndexDir;
+	}
+	
+	/**
+	 * Directory where the block table and DNA of files read from disk are cached. A file that was opened before is then
+	 * not scanned again as long as its length, modification time and header match.
+	 */
+	public ReadOptions blockIndexDir(@Nullable File blockIndexDir){
+		this.blockIndexDir=blockIndexDir;
+		return this;
+	}
+	
+	public boolean flatDecoders(){
+		return flatDecoders;
+	}
+	
+	/**
+	 * Decode structs made only of values and pointers from one buffered read of the whole struct, with every field read
+	 * at a precomputed offset, instead of through the interpreted field plan. Off by default until it is shown to be
+	 * faster.
+	 */
+	public ReadOptions flatDecoders(boolean flatDecoders){
+		this.flatDecoders=flatDecoders;
+		return this;
+	}
+	
+	@Nullable
+	public BlockCache blockCache(){
+		return blockCache;
+	}
+	
+	/**
+	 * Cache that keeps decoded blocks alive up to its memory budget, can be shared between files. Without one decoded
+	 * blocks are only kept for as long as something else references them.
+	 */
+	public ReadOptions blockCache(@Nullable BlockCache blockCache){
+		this.blockCache=blockCache;
+		return this;
+	}
+	
+	/**
+	 * Block cache with a custom eviction policy. Files that are given the same policy share its budget.
+	 *
+	 * @see #blockCache(BlockCache)
+	 */
+	public ReadOptions blockCache(@NotNull CachePolicy<Object> policy){
+		return blockCache(new BlockCache(policy));
+	}
+	
+	@Nullable
+	public RawBlockCache rawBlockCache(){
+		return rawBlockCache;
+	}
+	
+	/**
+	 * Cache of raw block bytes in direct memory, so decoding a block again does not have to go back to the source.
+	 * Sized independently of {@link #blockCache(BlockCache)} and can be shared between files.
+	 */
+	public ReadOptions rawBlockCache(@Nullable RawBlockCache rawBlockCache){
+		this.rawBlockCache=rawBlockCache;
+		return this;
+	}
+	
+	public int readerPoolSize(){
+		return readerPoolSize;
+	}
+	
+	/**
+	 * Maximum number of open readers kept for sources without random access. Threads share them by file position so
+	 * this bounds the open streams no matter how many threads read.
+	 */
+	public ReadOptions readerPoolSize(int readerPoolSize){
+		if(readerPoolSize<=0) throw new IllegalArgumentException("Pool size must be positive: "+readerPoolSize);
+		this.readerPoolSize=readerPoolSize;
+		return this;
+	}
+}
@@ -0,0 +1,122 @@
+package com.lapissea.blendfileparser;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool of open forward only readers. A reader is picked by how close it is behind the wanted position, not by
+ * the thread asking for it, so any number of threads share the same few open streams. A reader is owned by whoever
+ * took it out of its slot, taking and returning is a single compare and set.
+ */
+final class ReaderPool implements AutoCloseable{
+	
+	interface Opener{
+		BlendInputStream open() throws IOException;
+	}
+	
+	private final AtomicReferenceArray<BlendInputStream> slots;
+	private final Opener                                 opener;
+	
+	private volatile boolean closed;
+	
+	ReaderPool(int size, Opener opener){
+		if(size<=0) throw new IllegalArgumentException("Pool size must be positive: "+size);
+		slots=new AtomicReferenceArray<>(size);
+		this.opener=opener;
+	}
+	
+	/**
+	 * Takes the idle reader closest behind pos or opens a new one, and moves it to pos. The reader has to be given back
+	 * with {@link #release(BlendInputStream)}.
+	 */
+	BlendInputStream acquire(long pos) throws IOException{
+		if(closed) throw new IOException("Blend file closed");
+		
+		while(true){
+			int  best   =-1;
+			long bestPos=-1;
+			for(int i=0;i<slots.length();i++){
+				BlendInputStream in=slots.get(i);
+				if(in==null) continue;
+				long p=in.position();
+				if(p<=pos&&p>bestPos){
+					best=i;
+					bestPos=p;
+				}
+			}
+			if(best==-1) break;
+			
+			BlendInputStream in=slots.get(best);
+			if(in!=null&&slots.compareAndSet(best, in, null)){
+				//it may have been used and given back between the scan and the swap
+				if(in.position()>pos){
+					release(in);
+					continue;
+				}
+				in.skipNBytes(pos-in.position());
+				return in;
+			}
+		}
+		
+		BlendInputStream in=opener.open();
+		in.skipNBytes(pos);
+		return in;
+	}
+	
+	/**
+	 * Gives a reader back. If there is no free slot it replaces the reader furthest back in the file, the reader that
+	 * does not fit in is closed.
+	 */
+	void release(BlendInputStream in) throws IOException{
+		if(closed){
+			in.close();
+			return;
+		}
+		
+		for(int i=0;i<slots.length();i++){
+			if(slots.get(i)==null&&slots.compareAndSet(i, null, in)){
+				if(closed) drain();
+				return;
+			}
+		}
+		
+		int  worst   =-1;
+		long worstPos=in.position();
+		for(int i=0;i<slots.length();i++){
+			BlendInputStream s=slots.get(i);
+			if(s!=null&&s.position()<worstPos){
+				worst=i;
+				worstPos=s.position();
+			}
+		}
+		
+		BlendInputStream evicted=in;
+		if(worst!=-1){
+			BlendInputStream s=slots.get(worst);
+			if(s!=null&&slots.compareAndSet(worst, s, in)) evicted=s;
+		}
+		evicted.close();
+		if(closed) drain();
+	}
+	
+	private void drain() throws IOException{
+		IOException failure=null;
+		for(int i=0;i<slots.length();i++){
+			BlendInputStream in=slots.getAndSet(i, null);
+			if(in==null) continue;
+			try{
+				in.close();
+			}catch(IOException e){
+				if(failure==null) failure=e;
+				else failure.addSuppressed(e);
+			}
+		}
+		if(failure!=null) throw failure;
+	}
+	
+	@Override
+	public void close() throws IOException{
+		closed=true;
+		drain();
+	}
+}
@@ -0,0 +1,36 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.function.UnsafeFunction;
+
+import java.io.File;
+import java.io.IOException;
+
+public enum SourceMode{
+	/**
+	 * Sequential streams from the data provider. Seeking backwards reopens the file.
+	 */
+	STREAM(null),
+	/**
+	 * Maps the whole file in to memory. Only used for uncompressed files.
+	 */
+	MAPPED(MappedSource::new),
+	/**
+	 * Positional reads on one shared {@link java.nio.channels.FileChannel}. Only used for uncompressed files.
+	 */
+	CHANNEL(ChannelSource::new);
+	
+	private final UnsafeFunction<File, BlendSource, IOException> opener;
+	
+	SourceMode(UnsafeFunction<File, BlendSource, IOException> opener){
+		this.opener=opener;
+	}
+	
+	public boolean isRandomAccess(){
+		return opener!=null;
+	}
+	
+	BlendSource open(File file) throws IOException{
+		if(opener==null) throw new UnsupportedOperationException(this+" is not a random access mode");
+		return opener.apply(file);
+	}
+}
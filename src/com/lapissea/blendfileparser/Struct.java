@@ -6,7 +6,10 @@ import com.lapissea.util.*;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -84,6 +87,11 @@ public class Struct{
 	private static final Stack<Instance> INSTANCE_STACK=new Stack<>();
 	private static final String          NO_NAME       =new String(new char[0]);
 	private static final ID<?>           NO_ID         =new ID<>(new Object());
+	private static final Object          NULL_FIELD    =new Object();
+	
+	private static final AtomicReferenceFieldUpdater<Instance, ByteBuffer>           BYTES      =AtomicReferenceFieldUpdater.newUpdater(Instance.class, ByteBuffer.class, "bytes");
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static final AtomicReferenceFieldUpdater<Instance, AtomicReferenceArray> FIELD_CACHE=AtomicReferenceFieldUpdater.newUpdater(Instance.class, AtomicReferenceArray.class, "fieldCache");
 	
 	private static final List<String> TYPE_NAMES_2_PREFIX=Arrays.asList("Object", "Mesh", "Material", "bNodeTree", "Scene", "World",
 	                                                                    "wmWindowManager", "WorkSpace", "bScreen", "FreestyleLineStyle",
@@ -95,7 +103,7 @@ public class Struct{
 		private final long      dataStart;
 		public final  BlendFile blend;
 		
-		private List<Object> values;
+		private volatile List<Object> values;
 		
 		private int hash;
 		
@@ -132,24 +140,10 @@ public class Struct{
 			this.values=new AbstractList<Object>(){
 				boolean[] safe=new boolean[values.length];
 				
-				Object secure(Object v){
-					if(v==null) return null;
-					
-					if(v instanceof Instance){
-						Instance inst=(Instance)v;
-						if(inst.is("ID")){
-							Library lib=inst.getInstanceTranslated("lib");
-							if(lib!=null) return lib.get(inst.getString("name"));
-						}
-					}
-					
-					return v;
-				}
-				
 				@Override
 				public Object get(int index){
 					if(!safe[index]){
-						values[index]=secure(values[index]);
+						values[index]=settle(index, values[index]);
 						safe[index]=true;
 						
 						safe:
@@ -158,6 +152,7 @@ public class Struct{
 								if(!b) break safe;
 							}
 							Instance.this.values=ArrayViewList.create(values).obj2;
+							fieldCache=null;
 						}
 					}
 					return values[index];
@@ -171,8 +166,151 @@ public class Struct{
 			hash=calcHashCode();
 		}
 		
+		/**
+		 * Secures a decoded value unless the field was already handed out by {@link #readField(int)}, then that value is
+		 * kept so nested instances stay the same objects after allocation.
+		 */
+		private Object settle(int index, Object parsed){
+			AtomicReferenceArray<Object> cache=fieldCache;
+			if(cache==null) return secure(parsed);
+			
+			Object v=cache.get(index);
+			if(v==null){
+				v=secure(parsed);
+				if(!cache.compareAndSet(index, null, v==null?NULL_FIELD:v)) v=cache.get(index);
+			}
+			return v==NULL_FIELD?null:v;
+		}
+		
+		private Object secure(Object v){
+			if(v==null) return null;
+			
+			if(v instanceof Instance){
+				Instance inst=(Instance)v;
+				if(inst.is("ID")){
+					Library lib=inst.getInstanceTranslated("lib");
+					if(lib!=null) return lib.get(inst.getString("name"));
+				}
+			}
+			
+			return v;
+		}
+		
+		volatile AtomicReferenceArray<Object> fieldCache;
+		volatile ByteBuffer                   bytes;
+		
+		/**
+		 * Raw body of the struct, read once on the first field access of an unallocated instance. Nothing is locked while
+		 * reading, threads that race here read the same bytes and the first body published is kept. The buffer is only
+		 * read with absolute gets so it can be shared.
+		 */
+		ByteBuffer bytes(){
+			ByteBuffer b=bytes;
+			if(b!=null) return b;
+			
+			byte[] data=new byte[struct().length];
+			try{
+				blend.reopen(dataStart, in->{
+					in.readFully(data, 0, data.length);
+				});
+			}catch(IOException e){
+				throw UtilL.uncheckedThrow(e);
+			}
+			
+			b=ByteBuffer.wrap(data).order(blend.header.order);
+			if(!BYTES.compareAndSet(this, null, b)) b=bytes;
+			return b;
+		}
+		
+		private AtomicReferenceArray<Object> fieldCache(){
+			AtomicReferenceArray<Object> cache=fieldCache;
+			if(cache==null){
+				FIELD_CACHE.compareAndSet(this, null, new AtomicReferenceArray<>(fields.size()));
+				cache=fieldCache;
+			}
+			return cache;
+		}
+		
+		/**
+		 * Decodes a single field without allocating the whole instance. Fields that can be read from the raw body are
+		 * decoded straight out of it, the rest are read from their offset in the file. Decoding happens outside of any
+		 * lock, the first value to be published wins so every caller gets the same object. Once the instance is
+		 * allocated its values are authoritative, they are seeded from what was published here.
+		 */
+		private Object readField(int index){
+			if(isAllocated()) return values.get(index);
+			
+			Field field=fields.get(index);
+			if(IGNORE_VALUES.contains(field.name)) return null;
+			
+			AtomicReferenceArray<Object> cache=fieldCache();
+			Object                       v    =cache.get(index);
+			if(v!=null) return v==NULL_FIELD?null:v;
+			
+			int                   offset=fieldOffset(index, blend);
+			DataParser.FlatReader reader=DataParser.flatReader(Struct.this, index, blend);
+			try{
+				if(reader!=null) v=reader.read(bytes(), offset, dataStart+offset, blend);
+				else v=blend.reopen(dataStart+offset, in->{
+					return field.read(in, blend);
+				});
+			}catch(IOException e){
+				throw UtilL.uncheckedThrow(e);
+			}
+			v=secure(v);
+			
+			if(!cache.compareAndSet(index, null, v==null?NULL_FIELD:v)) v=cache.get(index);
+			if(isAllocated()) return values.get(index);
+			return v==NULL_FIELD?null:v;
+		}
+		
+		/**
+		 * @return index of a single primitive field that can be read from the raw body without boxing, -1 if the value has to go through {@link #get(Object)}
+		 */
+		private int scalarField(Object key){
+			if(!isByteBacked()) return -1;
+			Integer id=fieldIndex.get(key);
+			//noinspection AutoBoxing
+			if(id==null||DataParser.scalarKind(Struct.this, id, blend)==DataParser.SCALAR_NONE) return -1;
+			//noinspection AutoBoxing
+			return id;
+		}
+		
+		/**
+		 * @return true if fields are not yet decoded and can be read from the raw body
+		 */
+		boolean isByteBacked(){
+			return dataStart!=-1&&!isAllocated();
+		}
+		
+		private boolean isFloating(int index){
+			byte kind=DataParser.scalarKind(Struct.this, index, blend);
+			return kind==DataParser.SCALAR_FLOAT||kind==DataParser.SCALAR_DOUBLE;
+		}
+		
+		long scalarLong(int index){
+			return DataParser.scalarLong(bytes(), fieldOffset(index, blend), DataParser.scalarKind(Struct.this, index, blend));
+		}
+		
+		double scalarDouble(int index){
+			return DataParser.scalarDouble(bytes(), fieldOffset(index, blend), DataParser.scalarKind(Struct.this, index, blend));
+		}
+		
 		public synchronized Instance allocate(){
 			if(isAllocated()) return this;
+			if(bytes!=null){
+				ByteBuffer body=bytes;
+				bytes=null;
+				try{
+					Object[] values=DataParser.parseFlat(struct(), body, dataStart, blend);
+					if(values!=null){
+						allocateDone(values);
+						return this;
+					}
+				}catch(IOException e){
+					throw UtilL.uncheckedThrow(e);
+				}
+			}
 			try{
 				blend.reopen(dataStart, in->{
 					long pos=in.position();
@@ -434,7 +572,12 @@ public class Struct{
 			Integer id=fieldIndex.get(key);
 			if(id==null) throw new BlendFileMissingValue("\""+key+"\" field missing in \""+type+"\"{"+fields.stream().map(field->field.name).collect(Collectors.joining(", "))+"}");
 			
-			Object v=values().get(id);
+			//noinspection AutoBoxing
+			return get(id, key);
+		}
+		
+		Object get(int id, Object key){
+			Object v=isAllocated()||dataStart==-1?values().get(id):readField(id);
 			if(v instanceof Instance){
 				Instance i=(Instance)v;
 				if(i.is("StrayPointer")) throw new BlendFileMissingValue("\""+key+"\" is a stray pointer!");
@@ -443,18 +586,27 @@ public class Struct{
 		}
 		
 		public long getLong(Object key){
+			int i=scalarField(key);
+			if(i!=-1) return isFloating(i)?(long)scalarDouble(i):scalarLong(i);
+			
 			Object k=get(key);
 			if(k instanceof Long) return (Long)k;
 			else return ((Number)k).longValue();
 		}
 		
 		public int getInt(Object key){
+			int i=scalarField(key);
+			if(i!=-1) return isFloating(i)?(int)scalarDouble(i):(int)scalarLong(i);
+			
 			Object k=get(key);
 			if(k instanceof Integer) return (Integer)k;
 			else return ((Number)k).intValue();
 		}
 		
 		public byte getByte(Object key){
+			int i=scalarField(key);
+			if(i!=-1) return isFloating(i)?(byte)scalarDouble(i):(byte)scalarLong(i);
+			
 			Object k=get(key);
 			if(k instanceof Byte) return (Byte)k;
 			else return ((Number)k).byteValue();
@@ -465,12 +617,18 @@ public class Struct{
 		}
 		
 		public short getShort(Object key){
+			int i=scalarField(key);
+			if(i!=-1) return isFloating(i)?(short)scalarDouble(i):(short)scalarLong(i);
+			
 			Object k=get(key);
 			if(k instanceof Short) return (Short)k;
 			else return ((Number)k).shortValue();
 		}
 		
 		public float getFloat(Object key){
+			int i=scalarField(key);
+			if(i!=-1) return (float)scalarDouble(i);
+			
 			Object k=get(key);
 			if(k instanceof Float) return (Float)k;
 			else return ((Number)k).floatValue();
@@ -719,6 +877,11 @@ public class Struct{
 	private final Map<String, Integer> fieldIndex;
 	private final int                  hash;
 	
+	private final    AtomicReferenceArray<FieldHandle> handles;
+	private volatile int[]                             fieldOffsets;
+	
+	volatile DataParser.StructPlan plan;
+	
 	private static Map<String, Integer> makeIndex(List<Field> fields){
 		HashMap<String, Integer> fieldIndex=new HashMap<>(fields.size());
 		
@@ -734,24 +897,6 @@ public class Struct{
 		return fieldIndex;
 	}
 	
-	public static Struct read(BlendInputStream in, int id, String[] names, String[] types, short[] lengths) throws IOException{
-		DnaType type;
-		short   length;
-		{
-			short typeId=in.read2BInt();
-			type=new DnaType(types[typeId], 0, false, null);
-			length=lengths[typeId];
-		}
-		
-		Field[] variables=new Field[in.read2BInt()];
-		
-		for(int i=0;i<variables.length;i++){
-			variables[i]=new Field(types[in.read2BInt()], names[in.read2BInt()]);
-		}
-		
-		return new Struct(id, length, type, ArrayViewList.create(variables).obj2);
-	}
-	
 	public Struct(int id, short length, DnaType type, List<Field> fields){
 		this.id=id;
 		this.type=Objects.requireNonNull(type);
@@ -759,6 +904,7 @@ public class Struct{
 		this.fields=Objects.requireNonNull(fields);
 		
 		fieldIndex=makeIndex(fields);
+		handles=new AtomicReferenceArray<>(fields.size());
 		hash=Arrays.hashCode(new int[]{this.type.hashCode(), this.fields.hashCode()});
 	}
 	
@@ -766,6 +912,52 @@ public class Struct{
 		return type.is(typeName);
 	}
 	
+	/**
+	 * Byte offsets of every field from the start of the struct, with the end of the last field as the final entry.
+	 * Only depends on the pointer size so it is computed once. Structs are shared between files with the same pointer
+	 * size, threads that race here compute the same offsets.
+	 */
+	int[] fieldOffsets(BlendFile blend){
+		int[] offsets=fieldOffsets;
+		if(offsets==null){
+			offsets=new int[fields.size()+1];
+			for(int i=0;i<fields.size();i++){
+				offsets[i+1]=offsets[i]+fields.get(i).type.size(blend);
+			}
+			fieldOffsets=offsets;
+		}
+		return offsets;
+	}
+	
+	public int fieldOffset(int fieldIndex, BlendFile blend){
+		return fieldOffsets(blend)[fieldIndex];
+	}
+	
+	public int fieldOffset(String fieldName, BlendFile blend){
+		Integer index=fieldIndex.get(fieldName);
+		if(index==null) throw new BlendFileMissingValue("\""+fieldName+"\" field missing in \""+type+"\"");
+		//noinspection AutoBoxing
+		return fieldOffset(index, blend);
+	}
+	
+	/**
+	 * @return handle of a field that can read it from any instance of this struct without a name lookup
+	 */
+	public FieldHandle field(String fieldName){
+		Integer index=fieldIndex.get(fieldName);
+		if(index==null) throw new BlendFileMissingValue("\""+fieldName+"\" field missing in \""+type+"\"");
+		
+		//noinspection AutoBoxing
+		FieldHandle handle=handles.get(index);
+		if(handle==null){
+			//noinspection AutoBoxing
+			handles.compareAndSet(index, null, new FieldHandle(this, index));
+			//noinspection AutoBoxing
+			handle=handles.get(index);
+		}
+		return handle;
+	}
+	
 	@Override
 	public boolean equals(Object o){
 		if(this==o) return true;
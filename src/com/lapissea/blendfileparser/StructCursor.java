@@ -0,0 +1,203 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.util.NotNull;
+import com.lapissea.util.UtilL;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Walks the elements of a block with a single reused view. Elements are read in batches in to one buffer and fields are
+ * read from it by {@link FieldHandle} or byte offset so iterating does not allocate anything per element.
+ */
+public class StructCursor{
+	
+	private static final int BATCH_BYTES=1<<16;
+	
+	@NotNull
+	public final Struct struct;
+	
+	private final BlendFile  blend;
+	private final long       bodyFilePos;
+	private final int        count;
+	private final int        stride;
+	private final byte[]     batch;
+	private final ByteBuffer bb;
+	private final int        batchSize;
+	
+	private int batchStart;
+	private int batchCount;
+	private int index=-1;
+	private int base;
+	
+	StructCursor(FileBlockHeader block, BlendFile blend){
+		struct=block.getStruct();
+		if(struct==null) throw new IllegalArgumentException(block.code+" block has no struct");
+		this.blend=blend;
+		bodyFilePos=block.bodyFilePos;
+		count=block.count;
+		stride=struct.length;
+		if(stride<=0) throw new IllegalArgumentException(struct.type.name+" has no size to step over");
+		if((long)count*stride>block.bodySize) throw new IllegalArgumentException(count+" "+struct.type.name+" can not fit in to "+block.bodySize+" bytes");
+		
+		batchSize=Math.max(1, Math.min(count, BATCH_BYTES/stride));
+		batch=new byte[batchSize*stride];
+		bb=ByteBuffer.wrap(batch).order(blend.header.order);
+	}
+	
+	public int count(){
+		return count;
+	}
+	
+	/**
+	 * @return index of the current element, -1 before the first {@link #next()}
+	 */
+	public int index(){
+		return index;
+	}
+	
+	/**
+	 * Moves to the next element.
+	 *
+	 * @return false if there are no more elements
+	 */
+	public boolean next(){
+		if(index+1>=count) return false;
+		moveTo(index+1);
+		return true;
+	}
+	
+	public void moveTo(int index){
+		if(index<0||index>=count) throw new IndexOutOfBoundsException(index+" "+count);
+		if(index<batchStart||index>=batchStart+batchCount) load(index);
+		this.index=index;
+		base=(index-batchStart)*stride;
+	}
+	
+	/**
+	 * Moves back to before the first element.
+	 */
+	public void reset(){
+		index=-1;
+	}
+	
+	private void load(int start){
+		int n=Math.min(batchSize, count-start);
+		try{
+			blend.reopen(bodyFilePos+(long)start*stride, in->{
+				in.readFully(batch, 0, n*stride);
+			});
+		}catch(IOException e){
+			throw UtilL.uncheckedThrow(e);
+		}
+		batchStart=start;
+		batchCount=n;
+	}
+	
+	private int offset(FieldHandle handle){
+		if(handle.struct!=struct) throw new IllegalArgumentException(handle+" is not a field of "+struct.type.name);
+		if(index==-1) throw new IllegalStateException("No current element");
+		return base+struct.fieldOffset(handle.index, blend);
+	}
+	
+	private int scalarOffset(FieldHandle handle){
+		if(handle.kind==DataParser.SCALAR_NONE||handle.field.type.isArray()) throw new IllegalStateException(handle.field+" is not a primitive");
+		return offset(handle);
+	}
+	
+	public long getLong(FieldHandle handle){
+		int off=scalarOffset(handle);
+		return handle.floating?(long)DataParser.scalarDouble(bb, off, handle.kind):DataParser.scalarLong(bb, off, handle.kind);
+	}
+	
+	public int getInt(FieldHandle handle){
+		int off=scalarOffset(handle);
+		return handle.floating?(int)DataParser.scalarDouble(bb, off, handle.kind):(int)DataParser.scalarLong(bb, off, handle.kind);
+	}
+	
+	public short getShort(FieldHandle handle){
+		int off=scalarOffset(handle);
+		return handle.floating?(short)DataParser.scalarDouble(bb, off, handle.kind):(short)DataParser.scalarLong(bb, off, handle.kind);
+	}
+	
+	public byte getByte(FieldHandle handle){
+		int off=scalarOffset(handle);
+		return handle.floating?(byte)DataParser.scalarDouble(bb, off, handle.kind):(byte)DataParser.scalarLong(bb, off, handle.kind);
+	}
+	
+	public float getFloat(FieldHandle handle){
+		return (float)DataParser.scalarDouble(bb, scalarOffset(handle), handle.kind);
+	}
+	
+	/**
+	 * @return the raw address a pointer field holds
+	 */
+	public long getPointer(FieldHandle handle){
+		if(!handle.field.type.isPointer()||handle.field.type.isArray()) throw new IllegalStateException(handle.field+" is not a pointer");
+		return getPointerAt(offset(handle)-base);
+	}
+	
+	public float[] getFloatArray(FieldHandle handle, float[] dest){
+		if(handle.kind!=DataParser.SCALAR_FLOAT||!handle.field.type.isArray()) throw new IllegalStateException(handle.field+" is not a float array");
+		if(dest.length<handle.elements) throw new IllegalArgumentException("Destination of "+dest.length+" can not fit "+handle.elements+" values");
+		
+		int off=offset(handle);
+		for(int i=0;i<handle.elements;i++){
+			dest[i]=bb.getFloat(off+i*4);
+		}
+		return dest;
+	}
+	
+	public int[] getIntArray(FieldHandle handle, int[] dest){
+		if(handle.kind!=DataParser.SCALAR_INT||!handle.field.type.isArray()) throw new IllegalStateException(handle.field+" is not an int array");
+		if(dest.length<handle.elements) throw new IllegalArgumentException("Destination of "+dest.length+" can not fit "+handle.elements+" values");
+		
+		int off=offset(handle);
+		for(int i=0;i<handle.elements;i++){
+			dest[i]=bb.getInt(off+i*4);
+		}
+		return dest;
+	}
+	
+	private int at(int offset, int size){
+		if(index==-1) throw new IllegalStateException("No current element");
+		if(offset<0||offset+size>stride) throw new IndexOutOfBoundsException(offset+" "+stride);
+		return base+offset;
+	}
+	
+	public byte getByteAt(int offset){
+		return bb.get(at(offset, 1));
+	}
+	
+	public short getShortAt(int offset){
+		return bb.getShort(at(offset, 2));
+	}
+	
+	public int getIntAt(int offset){
+		return bb.getInt(at(offset, 4));
+	}
+	
+	public long getLongAt(int offset){
+		return bb.getLong(at(offset, 8));
+	}
+	
+	public float getFloatAt(int offset){
+		return bb.getFloat(at(offset, 4));
+	}
+	
+	public double getDoubleAt(int offset){
+		return bb.getDouble(at(offset, 8));
+	}
+	
+	public long getPointerAt(int offset){
+		return blend.header.ptrSize==4?getIntAt(offset):getLongAt(offset);
+	}
+	
+	/**
+	 * @return a full instance of the current element, this allocates and should be used only for elements that need it
+	 */
+	public Struct.Instance instance(){
+		if(index==-1) throw new IllegalStateException("No current element");
+		return struct.new Instance(bodyFilePos+(long)index*stride, blend);
+	}
+}
@@ -6,10 +6,8 @@ import com.lapissea.util.function.TriFunction;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
 import java.util.*;
 
-import static com.lapissea.blendfileparser.Util.*;
 import static com.lapissea.util.UtilL.*;
 
 @SuppressWarnings({"unchecked", "PointlessArithmeticExpression"})
@@ -61,11 +59,17 @@ public class TypeOptimizations{
 			totloop=new int[count];
 			mat_nr=new short[count];
 			
-			for(int i=0;i<count;i++){
-				loopstart[i]=in.read4BInt();
-				totloop[i]=in.read4BInt();
-				mat_nr[i]=in.read2BInt();
-				in.skipNBytes(1+1);
+			int stride=struct.length;
+			int batch =Math.max(1, BlendInputStream.CHUNK_SIZE/stride);
+			for(int i=0;i<count;i+=batch){
+				int        n =Math.min(batch, count-i);
+				ByteBuffer bb=in.readElements(n, stride);
+				for(int j=0;j<n;j++){
+					int off=j*stride;
+					loopstart[i+j]=bb.getInt(off);
+					totloop[i+j]=bb.getInt(off+4);
+					mat_nr[i+j]=bb.getShort(off+8);
+				}
 			}
 			
 		}
@@ -132,10 +136,16 @@ public class TypeOptimizations{
 		protected void readValues(int count, BlendInputStream in) throws IOException{
 			indices=new int[count*2];
 			
-			for(int i=0;i<count;i++){
-				indices[i*2+0]=in.read4BInt();
-				indices[i*2+1]=in.read4BInt();
-				in.skipNBytes(1+1+2);
+			int stride=struct.length;
+			int batch =Math.max(1, BlendInputStream.CHUNK_SIZE/stride);
+			for(int i=0;i<count;i+=batch){
+				int        n =Math.min(batch, count-i);
+				ByteBuffer bb=in.readElements(n, stride);
+				for(int j=0;j<n;j++){
+					int off=j*stride;
+					indices[(i+j)*2+0]=bb.getInt(off);
+					indices[(i+j)*2+1]=bb.getInt(off+4);
+				}
 			}
 			
 		}
@@ -192,25 +202,24 @@ public class TypeOptimizations{
 		
 		@Override
 		protected void readValues(int count, BlendInputStream in) throws IOException{
-			ByteBuffer  buffB=ByteBuffer.allocate(struct.length).order(blend.header.order);
-			byte[]      arr  =buffB.array();
-			FloatBuffer buff =buffB.asFloatBuffer();
-			
 			co=new float[count*3];
 			no=new short[count*3];
-			for(int i=0;i<count;i++){
-				readNBytes(in, arr);
-				
-				int off=i*3;
-				buffB.position(0);
-				co[off+0]=buffB.getFloat();
-				co[off+1]=buffB.getFloat();
-				co[off+2]=buffB.getFloat();
-				
-				no[off+0]=buffB.getShort();
-				no[off+1]=buffB.getShort();
-				no[off+2]=buffB.getShort();
-				
+			int stride=struct.length;
+			int batch =Math.max(1, BlendInputStream.CHUNK_SIZE/stride);
+			for(int i=0;i<count;i+=batch){
+				int        n =Math.min(batch, count-i);
+				ByteBuffer bb=in.readElements(n, stride);
+				for(int j=0;j<n;j++){
+					int off=j*stride;
+					int dst=(i+j)*3;
+					co[dst+0]=bb.getFloat(off);
+					co[dst+1]=bb.getFloat(off+4);
+					co[dst+2]=bb.getFloat(off+8);
+					
+					no[dst+0]=bb.getShort(off+12);
+					no[dst+1]=bb.getShort(off+14);
+					no[dst+2]=bb.getShort(off+16);
+				}
 			}
 
 //			LogUtil.println(co);
@@ -274,9 +283,16 @@ public class TypeOptimizations{
 			v=new int[count];
 			e=new int[count];
 			
-			for(int i=0;i<count;i++){
-				v[i]=in.read4BInt();
-				e[i]=in.read4BInt();
+			int stride=struct.length;
+			int batch =Math.max(1, BlendInputStream.CHUNK_SIZE/stride);
+			for(int i=0;i<count;i+=batch){
+				int        n =Math.min(batch, count-i);
+				ByteBuffer bb=in.readElements(n, stride);
+				for(int j=0;j<n;j++){
+					int off=j*stride;
+					v[i+j]=bb.getInt(off);
+					e[i+j]=bb.getInt(off+4);
+				}
 			}
 			
 		}
@@ -334,10 +350,16 @@ public class TypeOptimizations{
 		protected void readValues(int count, BlendInputStream in) throws IOException{
 			uv=new float[count*2];
 			
-			for(int i=0;i<count;i++){
-				uv[i*2]=in.read4BInt();
-				uv[i*2+1]=in.read4BInt();
-				in.skipNBytes(4);
+			int stride=struct.length;
+			int batch =Math.max(1, BlendInputStream.CHUNK_SIZE/stride);
+			for(int i=0;i<count;i+=batch){
+				int        n =Math.min(batch, count-i);
+				ByteBuffer bb=in.readElements(n, stride);
+				for(int j=0;j<n;j++){
+					int off=j*stride;
+					uv[(i+j)*2]=bb.getFloat(off);
+					uv[(i+j)*2+1]=bb.getFloat(off+4);
+				}
 			}
 			
 		}
@@ -392,12 +414,7 @@ public class TypeOptimizations{
 		@Override
 		protected void readValues(int count, BlendInputStream in) throws IOException{
 			rgba=new byte[count*4];
-			ByteBuffer bb=ByteBuffer.wrap(rgba);
-			while(bb.hasRemaining()){
-				int read=in.read(bb.array(), bb.position(), bb.remaining());
-				if(read==-1) throw new IOException("UEOF");
-				bb.position(bb.position()+read);
-			}
+			in.readFully(rgba, 0, rgba.length);
 		}
 		
 		public byte[] getRgba(){
@@ -563,8 +580,8 @@ public class TypeOptimizations{
 	}
 	
 	private static void register(Dna1 dna,
-	                             Map<String, TriFunction<Struct, FileBlockHeader, BlendFile, InstanceComposite>> map, String name,
-	                             TriFunction<Struct, FileBlockHeader, BlendFile, InstanceComposite> func,
+	                             Map<String, TriFunction<Struct, FileBlockHeader, BlendFile, InstanceComposite<?>>> map, String name,
+	                             TriFunction<Struct, FileBlockHeader, BlendFile, InstanceComposite<?>> func,
 	                             String... names){
 		Struct struct=dna.getStruct(name);
 		if(names.length==0) throw new RuntimeException();
@@ -575,8 +592,8 @@ public class TypeOptimizations{
 		map.put(name, func);
 	}
 	
-	public static Map<String, TriFunction<Struct, FileBlockHeader, BlendFile, InstanceComposite>> get(Dna1 dna){
-		Map<String, TriFunction<Struct, FileBlockHeader, BlendFile, InstanceComposite>> result=new HashMap<>();
+	public static Map<String, TriFunction<Struct, FileBlockHeader, BlendFile, InstanceComposite<?>>> get(Dna1 dna){
+		Map<String, TriFunction<Struct, FileBlockHeader, BlendFile, InstanceComposite<?>>> result=new HashMap<>();
 		
 		register(dna, result, "MVert", MVert::new, "co", "no", "flag", "bweight");
 		register(dna, result, "MLoop", MLoop::new, "v", "e");
@@ -0,0 +1,223 @@
+package com.lapissea.blendfileparser;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least recently used store with a weight budget shared by any number of files. Every file gets its own
+ * {@link Segment} that holds its values and that only the file references, the store keeps its order through weak
+ * references to the segments. A file that is dropped without being closed is not kept reachable by the store, its
+ * entries are purged the next time the store is used. This is the default {@link CachePolicy}.
+ */
+final class WeightedLru<V> implements CachePolicy<V>{
+	
+	/**
+	 * Values of one file, keyed by file position.
+	 */
+	static final class Segment<V> implements CachePolicy.Segment<V>{
+		private final Map<Long, V> values=new HashMap<>();
+		private final SegmentRef   ref;
+		
+		private Segment(ReferenceQueue<Object> queue){
+			ref=new SegmentRef(this, queue);
+		}
+	}
+	
+	private static final class SegmentRef extends WeakReference<Segment<?>>{
+		private final Set<Key> keys=new HashSet<>();
+		
+		private SegmentRef(Segment<?> referent, ReferenceQueue<Object> queue){
+			super(referent, queue);
+		}
+	}
+	
+	private static final class Key{
+		final SegmentRef segment;
+		final long       pos;
+		final long       weight;
+		
+		Key(SegmentRef segment, long pos, long weight){
+			this.segment=segment;
+			this.pos=pos;
+			this.weight=weight;
+		}
+		
+		@Override
+		public boolean equals(Object o){
+			if(this==o) return true;
+			if(!(o instanceof Key)) return false;
+			Key key=(Key)o;
+			return pos==key.pos&&segment==key.segment;
+		}
+		
+		@Override
+		public int hashCode(){
+			return 31*System.identityHashCode(segment)+Long.hashCode(pos);
+		}
+	}
+	
+	private final long                    maxWeight;
+	private final ReferenceQueue<Object>  queue=new ReferenceQueue<>();
+	private final LinkedHashMap<Key, Key> order=new LinkedHashMap<>(64, 0.75F, true);
+	private       long                    weight;
+	
+	private final LongAdder hits     =new LongAdder();
+	private final LongAdder misses   =new LongAdder();
+	private final LongAdder evictions=new LongAdder();
+	
+	WeightedLru(long maxWeight){
+		if(maxWeight<=0) throw new IllegalArgumentException("Budget must be positive: "+maxWeight);
+		this.maxWeight=maxWeight;
+	}
+	
+	@Override
+	public Segment<V> newSegment(){
+		return new Segment<>(queue);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <V> Segment<V> own(CachePolicy.Segment<V> segment){
+		if(!(segment instanceof Segment)) throw new IllegalArgumentException("Segment of another policy: "+segment);
+		return (Segment<V>)segment;
+	}
+	
+	private void drop(SegmentRef ref){
+		for(Key key : ref.keys){
+			order.remove(key);
+			weight-=key.weight;
+		}
+		ref.keys.clear();
+	}
+	
+	/**
+	 * Drops the entries of segments whose file is gone. Has to be called under the lock.
+	 */
+	private void purge(){
+		SegmentRef stale;
+		while((stale=(SegmentRef)queue.poll())!=null){
+			drop(stale);
+		}
+	}
+	
+	@Override
+	public V get(CachePolicy.Segment<V> s, long pos){
+		Segment<V> segment=own(s);
+		V          value;
+		synchronized(order){
+			purge();
+			//noinspection AutoBoxing
+			value=segment.values.get(pos);
+			if(value!=null) order.get(new Key(segment.ref, pos, 0));
+		}
+		if(value==null) misses.increment();
+		else hits.increment();
+		return value;
+	}
+	
+	/**
+	 * Stores a value and evicts least recently used ones until the budget is met. The caller makes sure the weight
+	 * is within the budget on its own.
+	 */
+	@Override
+	public void put(CachePolicy.Segment<V> s, long pos, V value, long weight){
+		Segment<V> segment=own(s);
+		Key        key    =new Key(segment.ref, pos, weight);
+		synchronized(order){
+			purge();
+			
+			Key old=order.remove(key);
+			if(old!=null){
+				segment.ref.keys.remove(old);
+				this.weight-=old.weight;
+			}
+			order.put(key, key);
+			segment.ref.keys.add(key);
+			//noinspection AutoBoxing
+			segment.values.put(pos, value);
+			this.weight+=weight;
+			
+			Iterator<Key> iter=order.keySet().iterator();
+			while(this.weight>maxWeight&&iter.hasNext()){
+				Key eldest=iter.next();
+				if(eldest==key) continue;
+				iter.remove();
+				this.weight-=eldest.weight;
+				eldest.segment.keys.remove(eldest);
+				Segment<?> other=eldest.segment.get();
+				//noinspection AutoBoxing
+				if(other!=null) other.values.remove(eldest.pos);
+				evictions.increment();
+			}
+		}
+	}
+	
+	/**
+	 * Drops every value of a segment.
+	 */
+	@Override
+	public void invalidate(CachePolicy.Segment<V> s){
+		Segment<V> segment=own(s);
+		synchronized(order){
+			purge();
+			drop(segment.ref);
+			segment.values.clear();
+		}
+	}
+	
+	@Override
+	public void clear(){
+		synchronized(order){
+			for(Key key : order.keySet()){
+				key.segment.keys.clear();
+				Segment<?> s=key.segment.get();
+				if(s!=null) s.values.clear();
+			}
+			order.clear();
+			weight=0;
+			purge();
+		}
+	}
+	
+	@Override
+	public long maxWeight(){
+		return maxWeight;
+	}
+	
+	@Override
+	public long weight(){
+		synchronized(order){
+			purge();
+			return weight;
+		}
+	}
+	
+	@Override
+	public int size(){
+		synchronized(order){
+			purge();
+			return order.size();
+		}
+	}
+	
+	@Override
+	public long hits(){
+		return hits.sum();
+	}
+	
+	@Override
+	public long misses(){
+		return misses.sum();
+	}
+	
+	@Override
+	public long evictions(){
+		return evictions.sum();
+	}
+}
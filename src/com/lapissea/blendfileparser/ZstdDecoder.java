@@ -0,0 +1,718 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.blendfileparser.exceptions.BlendFileIOException;
+
+import java.util.Arrays;
+
+/**
+ * Minimal pure java Zstandard (RFC 8878) frame decoder. Dictionaries are not supported and checksums are not verified.
+ */
+final class ZstdDecoder{
+	
+	static final int MAGIC               =0xFD2FB528;
+	static final int SKIPPABLE_MAGIC     =0x184D2A50;
+	static final int SKIPPABLE_MAGIC_MASK=0xFFFFFFF0;
+	
+	private static final int BLOCK_RAW       =0;
+	private static final int BLOCK_RLE       =1;
+	private static final int BLOCK_COMPRESSED=2;
+	
+	private static final int MAX_BLOCK_SIZE=1<<17;
+	
+	private static final int[] LL_BASE={
+		0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+		16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096,
+		8192, 16384, 32768, 65536
+	};
+	private static final int[] LL_BITS={
+		0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+		1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
+		13, 14, 15, 16
+	};
+	private static final int[] ML_BASE={
+		3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+		19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
+		35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+		4099, 8195, 16387, 32771, 65539
+	};
+	private static final int[] ML_BITS={
+		0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+		0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+		1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
+		12, 13, 14, 15, 16
+	};
+	
+	private static final int LL_MAX_SYMBOL=35, LL_MAX_LOG=9;
+	private static final int ML_MAX_SYMBOL=52, ML_MAX_LOG=9;
+	private static final int OF_MAX_SYMBOL=31, OF_MAX_LOG=8;
+	
+	private static final FseTable LL_DEFAULT=FseTable.build(new short[]{
+		4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+		2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+		-1, -1, -1, -1
+	}, 6);
+	private static final FseTable ML_DEFAULT=FseTable.build(new short[]{
+		1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+		1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+		1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+		-1, -1, -1, -1, -1
+	}, 6);
+	private static final FseTable OF_DEFAULT=FseTable.build(new short[]{
+		1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+		1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1
+	}, 5);
+	
+	static BlendFileIOException corrupted(String what){
+		return new BlendFileIOException("Corrupted zstd data: "+what);
+	}
+	
+	private static int highBit(int val){
+		return 31-Integer.numberOfLeadingZeros(val);
+	}
+	
+	private static final class FseTable{
+		
+		final int    log;
+		final int[]  symbol;
+		final byte[] bits;
+		final int[]  base;
+		
+		private FseTable(int log){
+			this.log=log;
+			int size=1<<log;
+			symbol=new int[size];
+			bits=new byte[size];
+			base=new int[size];
+		}
+		
+		static FseTable rle(int symbol){
+			FseTable t=new FseTable(0);
+			t.symbol[0]=symbol;
+			return t;
+		}
+		
+		static FseTable build(short[] norm, int log){
+			int      size =1<<log;
+			FseTable t    =new FseTable(log);
+			int[]    next =new int[norm.length];
+			int      high =size-1;
+			
+			for(int s=0;s<norm.length;s++){
+				if(norm[s]==-1){
+					t.symbol[high--]=s;
+					next[s]=1;
+				}else next[s]=norm[s];
+			}
+			
+			int step=(size>>>1)+(size>>>3)+3, mask=size-1, pos=0;
+			for(int s=0;s<norm.length;s++){
+				for(int i=0;i<norm[s];i++){
+					t.symbol[pos]=s;
+					do{
+						pos=(pos+step)&mask;
+					}while(pos>high);
+				}
+			}
+			if(pos!=0) return null;
+			
+			for(int u=0;u<size;u++){
+				int s  =t.symbol[u];
+				int ns =next[s]++;
+				int nb =log-highBit(ns);
+				t.bits[u]=(byte)nb;
+				t.base[u]=(ns<<nb)-size;
+			}
+			return t;
+		}
+	}
+	
+	/**
+	 * Reads bits from the end of a section towards its start, as used by all entropy coded zstd streams.
+	 */
+	private static final class BackwardBits{
+		private final byte[] src;
+		private final int    start;
+		private       long   bitPos;
+		
+		BackwardBits(byte[] src, int start, int len) throws BlendFileIOException{
+			if(len<=0) throw corrupted("empty bitstream");
+			int last=src[start+len-1]&0xFF;
+			if(last==0) throw corrupted("bitstream end mark missing");
+			this.src=src;
+			this.start=start;
+			bitPos=(len-1)*8L+highBit(last);
+		}
+		
+		int peek(int n){
+			return (int)bitsAt(bitPos-n, n);
+		}
+		
+		void skip(int n){
+			bitPos-=n;
+		}
+		
+		int read(int n){
+			if(n==0) return 0;
+			bitPos-=n;
+			return (int)bitsAt(bitPos, n);
+		}
+		
+		boolean overflowed(){
+			return bitPos<0;
+		}
+		
+		boolean finished(){
+			return bitPos==0;
+		}
+		
+		private long bitsAt(long lo, int n){
+			if(lo<0){
+				int valid=(int)(lo+n);
+				if(valid<=0) return 0;
+				return bitsAt(0, valid)<<-lo;
+			}
+			int  first=start+(int)(lo>>>3);
+			int  shift=(int)(lo&7);
+			int  bytes=(shift+n+7)>>>3;
+			long v    =0;
+			for(int i=bytes-1;i>=0;i--){
+				v=(v<<8)|(src[first+i]&0xFF);
+			}
+			return (v>>>shift)&((1L<<n)-1);
+		}
+	}
+	
+	static final class FrameHeader{
+		final int     headerSize;
+		final long    contentSize;
+		final boolean checksum;
+		
+		private FrameHeader(int headerSize, long contentSize, boolean checksum){
+			this.headerSize=headerSize;
+			this.contentSize=contentSize;
+			this.checksum=checksum;
+		}
+	}
+	
+	static int readIntLE(byte[] src, int off){
+		return (src[off]&0xFF)|
+		       ((src[off+1]&0xFF)<<8)|
+		       ((src[off+2]&0xFF)<<16)|
+		       ((src[off+3]&0xFF)<<24);
+	}
+	
+	private static int read3LE(byte[] src, int off){
+		return (src[off]&0xFF)|
+		       ((src[off+1]&0xFF)<<8)|
+		       ((src[off+2]&0xFF)<<16);
+	}
+	
+	/**
+	 * Size of a frame header, including the magic number, for a given frame header descriptor byte.
+	 */
+	static int frameHeaderSize(int descriptor){
+		int     fcsFlag      =descriptor>>>6;
+		boolean singleSegment=(descriptor&0x20)!=0;
+		int     dictIdFlag   =descriptor&3;
+		
+		return 4+1+
+		       (singleSegment?0:1)+
+		       (dictIdFlag==3?4:dictIdFlag)+
+		       (fcsFlag==0?(singleSegment?1:0):1<<fcsFlag);
+	}
+	
+	static FrameHeader readFrameHeader(byte[] src, int off) throws BlendFileIOException{
+		if(readIntLE(src, off)!=MAGIC) throw corrupted("bad frame magic");
+		int descriptor=src[off+4]&0xFF;
+		if((descriptor&0x08)!=0) throw corrupted("reserved frame header bit set");
+		
+		int     fcsFlag      =descriptor>>>6;
+		boolean singleSegment=(descriptor&0x20)!=0;
+		int     dictIdFlag   =descriptor&3;
+		
+		int p=off+5;
+		if(!singleSegment) p++;
+		
+		int dictIdSize=dictIdFlag==3?4:dictIdFlag;
+		for(int i=0;i<dictIdSize;i++){
+			if(src[p+i]!=0) throw new BlendFileIOException("zstd dictionaries are not supported");
+		}
+		p+=dictIdSize;
+		
+		int  fcsSize    =fcsFlag==0?(singleSegment?1:0):1<<fcsFlag;
+		long contentSize=-1;
+		if(fcsSize!=0){
+			contentSize=0;
+			for(int i=fcsSize-1;i>=0;i--){
+				contentSize=(contentSize<<8)|(src[p+i]&0xFF);
+			}
+			if(fcsSize==2) contentSize+=256;
+			if(contentSize<0) throw corrupted("content size too large");
+		}
+		p+=fcsSize;
+		
+		return new FrameHeader(p-off, contentSize, (descriptor&0x04)!=0);
+	}
+	
+	/**
+	 * Decompresses a single frame. If expectedSize is negative, the size is taken from the frame header or discovered while decoding.
+	 */
+	static byte[] decompressFrame(byte[] src, int off, int len, long expectedSize) throws BlendFileIOException{
+		try{
+			return new ZstdDecoder(src, off, off+len).decodeFrame(expectedSize);
+		}catch(ArrayIndexOutOfBoundsException e){
+			throw new BlendFileIOException("Corrupted zstd data: truncated frame", e);
+		}
+	}
+	
+	private final byte[] src;
+	private final int    end;
+	private       int    ip;
+	
+	private byte[] out;
+	private int    op;
+	
+	private final byte[] literals=new byte[MAX_BLOCK_SIZE];
+	private       int    literalCount;
+	
+	private int[]  huffSymbol;
+	private byte[] huffBits;
+	private int    huffLog;
+	
+	private FseTable llTable, ofTable, mlTable;
+	
+	private final int[] rep={1, 4, 8};
+	
+	private ZstdDecoder(byte[] src, int start, int end){
+		this.src=src;
+		this.ip=start;
+		this.end=end;
+	}
+	
+	private void ensureOut(int extra) throws BlendFileIOException{
+		long needed=(long)op+extra;
+		if(needed<=out.length) return;
+		if(needed>Integer.MAX_VALUE-8) throw new BlendFileIOException("zstd frame too large");
+		out=Arrays.copyOf(out, (int)Math.max(needed, Math.min(Integer.MAX_VALUE-8, out.length*2L)));
+	}
+	
+	private byte[] decodeFrame(long expectedSize) throws BlendFileIOException{
+		FrameHeader header=readFrameHeader(src, ip);
+		ip+=header.headerSize;
+		
+		long size=expectedSize>=0?expectedSize:header.contentSize;
+		if(size>Integer.MAX_VALUE-8) throw new BlendFileIOException("zstd frame too large");
+		out=new byte[size>=0?(int)size:MAX_BLOCK_SIZE];
+		
+		boolean last;
+		do{
+			if(ip+3>end) throw corrupted("truncated block header");
+			int blockHeader=read3LE(src, ip);
+			ip+=3;
+			
+			last=(blockHeader&1)!=0;
+			int type     =(blockHeader>>>1)&3;
+			int blockSize=blockHeader>>>3;
+			
+			switch(type){
+			case BLOCK_RAW:
+				if(ip+blockSize>end) throw corrupted("truncated raw block");
+				ensureOut(blockSize);
+				System.arraycopy(src, ip, out, op, blockSize);
+				op+=blockSize;
+				ip+=blockSize;
+				break;
+			case BLOCK_RLE:
+				ensureOut(blockSize);
+				Arrays.fill(out, op, op+blockSize, src[ip]);
+				op+=blockSize;
+				ip++;
+				break;
+			case BLOCK_COMPRESSED:
+				if(blockSize>MAX_BLOCK_SIZE) throw corrupted("block too large");
+				if(ip+blockSize>end) throw corrupted("truncated compressed block");
+				int blockEnd=ip+blockSize;
+				decodeCompressedBlock(blockEnd);
+				ip=blockEnd;
+				break;
+			default:
+				throw corrupted("reserved block type");
+			}
+		}while(!last);
+		
+		if(header.checksum) ip+=4;
+		if(ip>end) throw corrupted("truncated checksum");
+		
+		if(size>=0&&op!=size) throw corrupted("frame decoded to "+op+" bytes but "+size+" were expected");
+		return op==out.length?out:Arrays.copyOf(out, op);
+	}
+	
+	private void decodeCompressedBlock(int blockEnd) throws BlendFileIOException{
+		decodeLiterals();
+		decodeSequences(blockEnd);
+	}
+	
+	private void decodeLiterals() throws BlendFileIOException{
+		int b0        =src[ip]&0xFF;
+		int type      =b0&3;
+		int sizeFormat=(b0>>>2)&3;
+		
+		if(type<2){
+			int size;
+			switch(sizeFormat){
+			case 0:
+			case 2:
+				size=b0>>>3;
+				ip+=1;
+				break;
+			case 1:
+				size=(b0>>>4)+((src[ip+1]&0xFF)<<4);
+				ip+=2;
+				break;
+			default:
+				size=(b0>>>4)+((src[ip+1]&0xFF)<<4)+((src[ip+2]&0xFF)<<12);
+				ip+=3;
+				break;
+			}
+			if(size>MAX_BLOCK_SIZE) throw corrupted("too many literals");
+			
+			if(type==0){
+				System.arraycopy(src, ip, literals, 0, size);
+				ip+=size;
+			}else{
+				Arrays.fill(literals, 0, size, src[ip]);
+				ip++;
+			}
+			literalCount=size;
+			return;
+		}
+		
+		int regenerated, compressed, streams;
+		switch(sizeFormat){
+		case 0:
+		case 1:{
+			int c=read3LE(src, ip);
+			regenerated=(c>>>4)&0x3FF;
+			compressed=(c>>>14)&0x3FF;
+			streams=sizeFormat==0?1:4;
+			ip+=3;
+			break;
+		}
+		case 2:{
+			int c=readIntLE(src, ip);
+			regenerated=(c>>>4)&0x3FFF;
+			compressed=(c>>>18)&0x3FFF;
+			streams=4;
+			ip+=4;
+			break;
+		}
+		default:{
+			long c=(readIntLE(src, ip)&0xFFFFFFFFL)|((long)(src[ip+4]&0xFF)<<32);
+			regenerated=(int)((c>>>4)&0x3FFFF);
+			compressed=(int)((c>>>22)&0x3FFFF);
+			streams=4;
+			ip+=5;
+			break;
+		}
+		}
+		if(regenerated>MAX_BLOCK_SIZE) throw corrupted("too many literals");
+		
+		int literalsEnd=ip+compressed;
+		if(type==2) readHuffmanTable(literalsEnd);
+		else if(huffSymbol==null) throw corrupted("treeless literals without a previous table");
+		
+		if(streams==1){
+			decodeHuffmanStream(ip, literalsEnd-ip, 0, regenerated);
+		}else{
+			int s1  =(src[ip]&0xFF)|((src[ip+1]&0xFF)<<8);
+			int s2  =(src[ip+2]&0xFF)|((src[ip+3]&0xFF)<<8);
+			int s3  =(src[ip+4]&0xFF)|((src[ip+5]&0xFF)<<8);
+			int data=ip+6;
+			int s4  =literalsEnd-data-s1-s2-s3;
+			if(s4<=0) throw corrupted("bad literal stream sizes");
+			
+			int segment=(regenerated+3)/4;
+			if(regenerated-3*segment<0) throw corrupted("bad literal size");
+			decodeHuffmanStream(data, s1, 0, segment);
+			decodeHuffmanStream(data+s1, s2, segment, segment);
+			decodeHuffmanStream(data+s1+s2, s3, segment*2, segment);
+			decodeHuffmanStream(data+s1+s2+s3, s4, segment*3, regenerated-3*segment);
+		}
+		
+		ip=literalsEnd;
+		literalCount=regenerated;
+	}
+	
+	private void decodeHuffmanStream(int start, int len, int dst, int count) throws BlendFileIOException{
+		BackwardBits bits=new BackwardBits(src, start, len);
+		int[]        sym =huffSymbol;
+		byte[]       nb  =huffBits;
+		int          log =huffLog;
+		for(int i=0;i<count;i++){
+			int idx=bits.peek(log);
+			literals[dst+i]=(byte)sym[idx];
+			bits.skip(nb[idx]);
+		}
+		if(!bits.finished()) throw corrupted("huffman stream not fully consumed");
+	}
+	
+	private void readHuffmanTable(int limit) throws BlendFileIOException{
+		int   header =src[ip++]&0xFF;
+		int[] weights=new int[256];
+		int   count;
+		
+		if(header<128){
+			int      end  =ip+header;
+			FseTable table=readFseTable(255, 6, end);
+			if(table==null) throw corrupted("huffman weight table");
+			
+			BackwardBits bits=new BackwardBits(src, ip, end-ip);
+			int          s1  =bits.read(table.log);
+			int          s2  =bits.read(table.log);
+			count=0;
+			while(true){
+				if(count>253) throw corrupted("too many huffman weights");
+				weights[count++]=table.symbol[s1];
+				s1=table.base[s1]+bits.read(table.bits[s1]);
+				if(bits.overflowed()){
+					weights[count++]=table.symbol[s2];
+					break;
+				}
+				weights[count++]=table.symbol[s2];
+				s2=table.base[s2]+bits.read(table.bits[s2]);
+				if(bits.overflowed()){
+					weights[count++]=table.symbol[s1];
+					break;
+				}
+			}
+			ip=end;
+		}else{
+			count=header-127;
+			for(int i=0;i<count;i++){
+				int b=src[ip+i/2]&0xFF;
+				weights[i]=(i&1)==0?b>>>4:b&0xF;
+			}
+			ip+=(count+1)/2;
+		}
+		if(ip>limit) throw corrupted("huffman table overflows literals");
+		
+		int total=0;
+		for(int i=0;i<count;i++){
+			int w=weights[i];
+			if(w>11) throw corrupted("huffman weight too large");
+			if(w>0) total+=1<<(w-1);
+		}
+		if(total==0) throw corrupted("empty huffman table");
+		
+		int maxBits=highBit(total)+1;
+		if(maxBits>11) throw corrupted("huffman table too deep");
+		int rest=(1<<maxBits)-total;
+		if(Integer.bitCount(rest)!=1) throw corrupted("huffman weights do not sum to a power of 2");
+		weights[count++]=highBit(rest)+1;
+		
+		int[] rankStart=new int[maxBits+2];
+		for(int i=0;i<count;i++){
+			if(weights[i]>0) rankStart[weights[i]]+=1<<(weights[i]-1);
+		}
+		for(int w=1, next=0;w<=maxBits;w++){
+			int c=rankStart[w];
+			rankStart[w]=next;
+			next+=c;
+		}
+		
+		int    size=1<<maxBits;
+		int[]  sym =new int[size];
+		byte[] nb  =new byte[size];
+		for(int s=0;s<count;s++){
+			int w=weights[s];
+			if(w==0) continue;
+			int len  =1<<(w-1);
+			int start=rankStart[w];
+			Arrays.fill(sym, start, start+len, s);
+			Arrays.fill(nb, start, start+len, (byte)(maxBits+1-w));
+			rankStart[w]+=len;
+		}
+		
+		huffSymbol=sym;
+		huffBits=nb;
+		huffLog=maxBits;
+	}
+	
+	private long forwardBits(long bitOff, int n, int limit){
+		int  first=ip+(int)(bitOff>>>3);
+		int  shift=(int)(bitOff&7);
+		int  bytes=(shift+n+7)>>>3;
+		long v    =0;
+		for(int i=bytes-1;i>=0;i--){
+			int at=first+i;
+			v=(v<<8)|(at<limit?src[at]&0xFF:0);
+		}
+		return (v>>>shift)&((1L<<n)-1);
+	}
+	
+	private FseTable readFseTable(int maxSymbol, int maxLog, int limit) throws BlendFileIOException{
+		long bitOff=0;
+		int  log   =(int)forwardBits(0, 4, limit)+5;
+		bitOff+=4;
+		if(log>maxLog) throw corrupted("FSE accuracy too large");
+		
+		short[] norm     =new short[maxSymbol+1];
+		int     remaining=(1<<log)+1;
+		int     threshold=1<<log;
+		int     nbBits   =log+1;
+		int     symbol   =0;
+		boolean previous0=false;
+		
+		while(remaining>1&&symbol<=maxSymbol){
+			if(previous0){
+				int n0=symbol;
+				int repeat;
+				while((repeat=(int)forwardBits(bitOff, 2, limit))==3){
+					n0+=3;
+					bitOff+=2;
+				}
+				n0+=repeat;
+				bitOff+=2;
+				if(n0>maxSymbol) throw corrupted("FSE symbol out of range");
+				while(symbol<n0) norm[symbol++]=0;
+			}
+			
+			int max =(2*threshold-1)-remaining;
+			int bits=(int)forwardBits(bitOff, nbBits, limit);
+			int count;
+			if((bits&(threshold-1))<max){
+				count=bits&(threshold-1);
+				bitOff+=nbBits-1;
+			}else{
+				count=bits&(2*threshold-1);
+				if(count>=threshold) count-=max;
+				bitOff+=nbBits;
+			}
+			count--;
+			remaining-=count<0?-count:count;
+			norm[symbol++]=(short)count;
+			previous0=count==0;
+			while(remaining<threshold){
+				nbBits--;
+				threshold>>=1;
+			}
+		}
+		if(remaining!=1) throw corrupted("FSE probabilities do not add up");
+		
+		ip+=(int)((bitOff+7)>>>3);
+		if(ip>limit) throw corrupted("FSE table overflows section");
+		
+		return FseTable.build(symbol==norm.length?norm:Arrays.copyOf(norm, symbol), log);
+	}
+	
+	private FseTable sequenceTable(int mode, FseTable defaultTable, int maxSymbol, int maxLog, FseTable previous, int limit) throws BlendFileIOException{
+		switch(mode){
+		case 0:
+			return defaultTable;
+		case 1:{
+			int symbol=src[ip++]&0xFF;
+			if(symbol>maxSymbol) throw corrupted("RLE symbol out of range");
+			return FseTable.rle(symbol);
+		}
+		case 2:{
+			FseTable t=readFseTable(maxSymbol, maxLog, limit);
+			if(t==null) throw corrupted("FSE table");
+			return t;
+		}
+		default:
+			if(previous==null) throw corrupted("repeated FSE table without a previous one");
+			return previous;
+		}
+	}
+	
+	private void decodeSequences(int blockEnd) throws BlendFileIOException{
+		int b0=src[ip++]&0xFF;
+		int sequenceCount;
+		if(b0==0){
+			if(ip!=blockEnd) throw corrupted("data after empty sequence section");
+			ensureOut(literalCount);
+			System.arraycopy(literals, 0, out, op, literalCount);
+			op+=literalCount;
+			return;
+		}else if(b0<128){
+			sequenceCount=b0;
+		}else if(b0<255){
+			sequenceCount=((b0-128)<<8)+(src[ip++]&0xFF);
+		}else{
+			sequenceCount=(src[ip]&0xFF)+((src[ip+1]&0xFF)<<8)+0x7F00;
+			ip+=2;
+		}
+		
+		int modes=src[ip++]&0xFF;
+		if((modes&3)!=0) throw corrupted("reserved sequence mode bits set");
+		llTable=sequenceTable(modes>>>6, LL_DEFAULT, LL_MAX_SYMBOL, LL_MAX_LOG, llTable, blockEnd);
+		ofTable=sequenceTable((modes>>>4)&3, OF_DEFAULT, OF_MAX_SYMBOL, OF_MAX_LOG, ofTable, blockEnd);
+		mlTable=sequenceTable((modes>>>2)&3, ML_DEFAULT, ML_MAX_SYMBOL, ML_MAX_LOG, mlTable, blockEnd);
+		
+		FseTable ll=llTable, of=ofTable, ml=mlTable;
+		
+		BackwardBits bits   =new BackwardBits(src, ip, blockEnd-ip);
+		int          llState=bits.read(ll.log);
+		int          ofState=bits.read(of.log);
+		int          mlState=bits.read(ml.log);
+		
+		int litPos=0;
+		for(int i=0;i<sequenceCount;i++){
+			int llCode=ll.symbol[llState];
+			int ofCode=of.symbol[ofState];
+			int mlCode=ml.symbol[mlState];
+			if(llCode>LL_MAX_SYMBOL||mlCode>ML_MAX_SYMBOL||ofCode>OF_MAX_SYMBOL) throw corrupted("sequence code out of range");
+			
+			long offsetValue=(1L<<ofCode)+(bits.read(ofCode)&0xFFFFFFFFL);
+			int  matchLength=ML_BASE[mlCode]+bits.read(ML_BITS[mlCode]);
+			int  litLength  =LL_BASE[llCode]+bits.read(LL_BITS[llCode]);
+			
+			long offset;
+			if(offsetValue>3){
+				offset=offsetValue-3;
+				rep[2]=rep[1];
+				rep[1]=rep[0];
+				rep[0]=(int)offset;
+			}else{
+				int idx=(int)offsetValue-1+(litLength==0?1:0);
+				if(idx==0){
+					offset=rep[0];
+				}else{
+					offset=idx==3?rep[0]-1:rep[idx];
+					if(idx!=1) rep[2]=rep[1];
+					rep[1]=rep[0];
+					rep[0]=(int)offset;
+				}
+			}
+			
+			if(i!=sequenceCount-1){
+				llState=ll.base[llState]+bits.read(ll.bits[llState]);
+				mlState=ml.base[mlState]+bits.read(ml.bits[mlState]);
+				ofState=of.base[ofState]+bits.read(of.bits[ofState]);
+			}
+			
+			if(litPos+litLength>literalCount) throw corrupted("sequence uses more literals than available");
+			ensureOut(litLength+matchLength);
+			System.arraycopy(literals, litPos, out, op, litLength);
+			litPos+=litLength;
+			op+=litLength;
+			
+			if(offset<=0||offset>op) throw corrupted("match offset out of range");
+			int from=op-(int)offset;
+			if(offset>=matchLength){
+				System.arraycopy(out, from, out, op, matchLength);
+				op+=matchLength;
+			}else{
+				for(int j=0;j<matchLength;j++){
+					out[op++]=out[from+j];
+				}
+			}
+		}
+		if(!bits.finished()) throw corrupted("sequence stream not fully consumed");
+		
+		int rest=literalCount-litPos;
+		ensureOut(rest);
+		System.arraycopy(literals, litPos, out, op, rest);
+		op+=rest;
+	}
+}
@@ -0,0 +1,238 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.blendfileparser.exceptions.BlendFileIOException;
+import com.lapissea.util.UtilL;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Random access over a zstd compressed blend file. Blender writes the zstd seekable format so every frame can be
+ * decompressed on its own. The frame table is read from the seek table at the end of the file, if there is none the
+ * frames are found by walking their block headers.
+ */
+class ZstdSource extends ChunkedSource{
+	
+	private static final int SEEK_TABLE_MAGIC      =0x8F92EAB1;
+	private static final int SEEK_TABLE_FRAME_MAGIC=0x184D2A5E;
+	private static final int SEEK_TABLE_FOOTER_SIZE=9;
+	private static final int CACHE_CHUNKS          =16;
+	
+	static boolean isMagic(byte[] start){
+		return start.length>=4&&ZstdDecoder.readIntLE(start, 0)==ZstdDecoder.MAGIC;
+	}
+	
+	private final FileChannel channel;
+	private       byte[]      memory;
+	private final long        compressedSize;
+	
+	private long[] framePos;
+	private int[]  frameCompressedSize;
+	private long[] frameOffset;
+	private int    frameCount;
+	
+	private volatile byte[][] preloaded;
+	
+	ZstdSource(File file) throws IOException{
+		super(CACHE_CHUNKS);
+		channel=FileChannel.open(file.toPath(), READ);
+		try{
+			compressedSize=channel.size();
+			readFrameTable();
+		}catch(Throwable e){
+			channel.close();
+			throw e;
+		}
+	}
+	
+	ZstdSource(InputStream compressed) throws IOException{
+		super(CACHE_CHUNKS);
+		channel=null;
+		
+		ByteArrayOutputStream buff=new ByteArrayOutputStream();
+		byte[]                tmp =new byte[1<<16];
+		int                   read;
+		while((read=compressed.read(tmp))!=-1){
+			buff.write(tmp, 0, read);
+		}
+		memory=buff.toByteArray();
+		compressedSize=memory.length;
+		
+		readFrameTable();
+	}
+	
+	private byte[] readCompressed(long pos, int len) throws IOException{
+		if(pos<0||pos+len>compressedSize) throw new BlendFileIOException("Unexpected end of zstd file");
+		if(channel==null){
+			return Arrays.copyOfRange(memory, (int)pos, (int)pos+len);
+		}
+		
+		ByteBuffer bb=ByteBuffer.allocate(len);
+		while(bb.hasRemaining()){
+			int read=channel.read(bb, pos+bb.position());
+			if(read==-1) throw new BlendFileIOException("Unexpected end of zstd file");
+		}
+		return bb.array();
+	}
+	
+	private void addFrame(long pos, int compressedSize, long decompressedSize){
+		if(decompressedSize==0) return;
+		if(frameCount+1>=frameOffset.length){
+			int newSize=frameOffset.length<<1;
+			framePos=Arrays.copyOf(framePos, newSize);
+			frameCompressedSize=Arrays.copyOf(frameCompressedSize, newSize);
+			frameOffset=Arrays.copyOf(frameOffset, newSize);
+		}
+		framePos[frameCount]=pos;
+		frameCompressedSize[frameCount]=compressedSize;
+		frameOffset[frameCount+1]=frameOffset[frameCount]+decompressedSize;
+		frameCount++;
+	}
+	
+	private void readFrameTable() throws IOException{
+		framePos=new long[16];
+		frameCompressedSize=new int[16];
+		frameOffset=new long[16];
+		
+		if(!readSeekTable()) walkFrames();
+	}
+	
+	private boolean readSeekTable() throws IOException{
+		if(compressedSize<SEEK_TABLE_FOOTER_SIZE+8) return false;
+		
+		byte[] footer=readCompressed(compressedSize-SEEK_TABLE_FOOTER_SIZE, SEEK_TABLE_FOOTER_SIZE);
+		if(ZstdDecoder.readIntLE(footer, 5)!=SEEK_TABLE_MAGIC) return false;
+		
+		long frames    =ZstdDecoder.readIntLE(footer, 0)&0xFFFFFFFFL;
+		int  descriptor=footer[4]&0xFF;
+		int  entrySize =(descriptor&0x80)!=0?12:8;
+		
+		long tableStart=compressedSize-SEEK_TABLE_FOOTER_SIZE-frames*entrySize-8;
+		if(tableStart<0||frames*entrySize>Integer.MAX_VALUE) return false;
+		
+		byte[] table=readCompressed(tableStart, (int)(frames*entrySize)+8);
+		if(ZstdDecoder.readIntLE(table, 0)!=SEEK_TABLE_FRAME_MAGIC) return false;
+		
+		long pos=0;
+		for(int i=0;i<frames;i++){
+			int  off         =8+i*entrySize;
+			int  compressed  =ZstdDecoder.readIntLE(table, off);
+			long decompressed=ZstdDecoder.readIntLE(table, off+4)&0xFFFFFFFFL;
+			addFrame(pos, compressed, decompressed);
+			pos+=compressed&0xFFFFFFFFL;
+		}
+		if(pos!=tableStart) throw new BlendFileIOException("zstd seek table does not match the file");
+		return true;
+	}
+	
+	private void walkFrames() throws IOException{
+		long pos=0;
+		while(pos<compressedSize){
+			int magic=ZstdDecoder.readIntLE(readCompressed(pos, 4), 0);
+			
+			if((magic&ZstdDecoder.SKIPPABLE_MAGIC_MASK)==ZstdDecoder.SKIPPABLE_MAGIC){
+				pos+=8+(ZstdDecoder.readIntLE(readCompressed(pos+4, 4), 0)&0xFFFFFFFFL);
+				continue;
+			}
+			
+			int                     headerSize=ZstdDecoder.frameHeaderSize(readCompressed(pos+4, 1)[0]&0xFF);
+			ZstdDecoder.FrameHeader header    =ZstdDecoder.readFrameHeader(readCompressed(pos, headerSize), 0);
+			
+			long end=pos+headerSize;
+			while(true){
+				byte[] bh         =readCompressed(end, 3);
+				int    blockHeader=(bh[0]&0xFF)|((bh[1]&0xFF)<<8)|((bh[2]&0xFF)<<16);
+				int    blockSize  =blockHeader>>>3;
+				int    type       =(blockHeader>>>1)&3;
+				if(type==3) throw ZstdDecoder.corrupted("reserved block type");
+				
+				end+=3+(type==1?1:blockSize);
+				if((blockHeader&1)!=0) break;
+			}
+			if(header.checksum) end+=4;
+			if(end-pos>Integer.MAX_VALUE) throw new BlendFileIOException("zstd frame too large");
+			
+			long decompressedSize=header.contentSize;
+			if(decompressedSize<0){
+				decompressedSize=ZstdDecoder.decompressFrame(readCompressed(pos, (int)(end-pos)), 0, (int)(end-pos), -1).length;
+			}
+			
+			addFrame(pos, (int)(end-pos), decompressedSize);
+			pos=end;
+		}
+	}
+	
+	/**
+	 * Decompresses every frame up front, in parallel, and keeps them for the lifetime of the source.
+	 */
+	@Override
+	public void preload(){
+		if(preloaded!=null) return;
+		
+		byte[][] frames=new byte[frameCount][];
+		IntStream.range(0, frameCount).parallel().forEach(i->{
+			try{
+				frames[i]=readChunk(i);
+			}catch(IOException e){
+				throw UtilL.uncheckedThrow(e);
+			}
+		});
+		preloaded=frames;
+	}
+	
+	@Override
+	public boolean isInMemory(){
+		return preloaded!=null;
+	}
+	
+	@Override
+	protected int chunkIndex(long pos){
+		int i=Arrays.binarySearch(frameOffset, 0, frameCount, pos);
+		return i>=0?i:-i-2;
+	}
+	
+	@Override
+	protected long chunkStart(int chunkIndex){
+		return frameOffset[chunkIndex];
+	}
+	
+	@Override
+	protected byte[] getChunk(int chunkIndex) throws IOException{
+		byte[][] p=preloaded;
+		if(p!=null) return p[chunkIndex];
+		return super.getChunk(chunkIndex);
+	}
+	
+	@Override
+	protected byte[] readChunk(int chunkIndex) throws IOException{
+		int    len       =frameCompressedSize[chunkIndex];
+		byte[] compressed=readCompressed(framePos[chunkIndex], len);
+		return ZstdDecoder.decompressFrame(compressed, 0, len, frameOffset[chunkIndex+1]-frameOffset[chunkIndex]);
+	}
+	
+	@Override
+	protected boolean isOpen(){
+		return channel==null?memory!=null:channel.isOpen();
+	}
+	
+	@Override
+	public long size(){
+		return frameOffset[frameCount];
+	}
+	
+	@Override
+	public void close() throws IOException{
+		super.close();
+		preloaded=null;
+		if(channel!=null) channel.close();
+		else memory=null;
+	}
+}
@@ -0,0 +1,123 @@
+package com.lapissea.blendfileparser;
+
+import com.lapissea.blendfileparser.exceptions.BlendFileIOException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Decompresses the zstd corpus with both the frame decoder and the random access source and checks the size and CRC32
+ * listed in corpus.txt. Frames with a reserved block type have to be rejected. The blend sample is also opened as a
+ * blend file to check that a primitive pointer in to the middle of a block gives the same shape as one to its start.
+ * <p>
+ * Usage: ZstdRoundTrip [corpus directory], defaults to test/resources/zstd
+ */
+public class ZstdRoundTrip{
+	
+	public static void main(String[] args) throws IOException{
+		File dir=new File(args.length>0?args[0]:"test/resources/zstd");
+		
+		int          failed=0;
+		List<String> lines =Files.readAllLines(new File(dir, "corpus.txt").toPath());
+		for(String line : lines){
+			if(line.trim().isEmpty()) continue;
+			String[] parts   =line.trim().split(" ");
+			String   name    =parts[0];
+			long     size    =Long.parseLong(parts[1]);
+			long     checksum=Long.parseLong(parts[2], 16);
+			byte[]   src     =Files.readAllBytes(new File(dir, name).toPath());
+			
+			try{
+				check(name+" frame", ZstdDecoder.decompressFrame(src, 0, src.length, -1), size, checksum);
+				try(ZstdSource source=new ZstdSource(new ByteArrayInputStream(src))){
+					check(name+" source", readAll(source.openAt(0)), size, checksum);
+				}
+			}catch(Throwable e){
+				System.out.println("FAIL "+name+" "+e);
+				failed++;
+			}
+		}
+		
+		byte[] reserved=Files.readAllBytes(new File(dir, "reserved-block.zst").toPath());
+		try{
+			ZstdDecoder.decompressFrame(reserved, 0, reserved.length, -1);
+			System.out.println("FAIL reserved-block.zst frame was not rejected");
+			failed++;
+		}catch(BlendFileIOException ignored){ }
+		try{
+			new ZstdSource(new ByteArrayInputStream(reserved)).close();
+			System.out.println("FAIL reserved-block.zst source was not rejected");
+			failed++;
+		}catch(BlendFileIOException ignored){ }
+		
+		try{
+			checkInteriorPointers(new File(dir, "blend.1.zst"));
+		}catch(Throwable e){
+			System.out.println("FAIL interior pointers "+e);
+			failed++;
+		}
+		
+		System.out.println(lines.size()+" files, "+failed+" failed");
+		if(failed!=0) System.exit(1);
+	}
+	
+	private static void check(String name, byte[] data, long size, long checksum){
+		CRC32 crc=new CRC32();
+		crc.update(data);
+		if(data.length!=size||crc.getValue()!=checksum){
+			throw new AssertionError(name+" decompressed to "+data.length+" bytes crc "+Long.toHexString(crc.getValue()));
+		}
+	}
+	
+	/**
+	 * A float pointer to the second float of a block has to give the same list as one to its start, minus the first
+	 * element.
+	 */
+	private static void checkInteriorPointers(File file) throws IOException{
+		DnaType floatPtr=new DnaType("float", 1, false, null);
+		
+		int checked=0;
+		try(BlendFile blend=BlendFile.read(file)){
+			for(int i=0;i<blend.blocks.size();i++){
+				FileBlockHeader block=blend.blocks.header(i);
+				if(block.getStruct()==null||block.bodySize<8||block.bodySize%4!=0) continue;
+				
+				Object start   =DataParser.resolvePointer(floatPtr, block.oldPtr, blend);
+				Object interior=DataParser.resolvePointer(floatPtr, block.oldPtr+4, blend);
+				if(!(start instanceof List)||!(interior instanceof List)){
+					throw new AssertionError(block.code+" float pointers gave "+describe(start)+" at the start and "+describe(interior)+" inside");
+				}
+				
+				List<?> s =(List<?>)start;
+				List<?> in=(List<?>)interior;
+				if(in.size()!=s.size()-1) throw new AssertionError(block.code+" interior list has "+in.size()+" elements, expected "+(s.size()-1));
+				for(int j=0;j<in.size();j++){
+					if(!Objects.equals(in.get(j), s.get(j+1))) throw new AssertionError(block.code+" interior element "+j+" is "+in.get(j)+", expected "+s.get(j+1));
+				}
+				checked++;
+			}
+		}
+		if(checked==0) throw new AssertionError("no blocks to check in "+file);
+	}
+	
+	private static String describe(Object o){
+		return o==null?"null":o.getClass().getSimpleName();
+	}
+	
+	private static byte[] readAll(InputStream in) throws IOException{
+		ByteArrayOutputStream buff=new ByteArrayOutputStream();
+		byte[]                tmp =new byte[1<<16];
+		int                   read;
+		while((read=in.read(tmp))!=-1){
+			buff.write(tmp, 0, read);
+		}
+		return buff.toByteArray();
+	}
+}